@@ -0,0 +1,42 @@
+package com.example.attendancesystem.config;
+
+import com.example.attendancesystem.service.EmbeddingGallery;
+import com.example.attendancesystem.service.EmbeddingStore;
+import com.example.attendancesystem.service.FaceIndex;
+import com.example.attendancesystem.service.TieredFaceIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class FaceIndexConfig {
+
+    /**
+     * face.index.type=exact keeps the brute-force gallery only; hnsw (default)
+     * switches to the HNSW graph once the gallery reaches the exact threshold.
+     */
+    @Bean
+    public FaceIndex faceIndex(
+            @Value("${face.index.type:hnsw}") String type,
+            @Value("${face.index.exact-threshold:2000}") int exactThreshold,
+            @Value("${face.index.hnsw.m:16}") int m,
+            @Value("${face.index.hnsw.ef-construction:200}") int efConstruction,
+            @Value("${face.index.hnsw.ef-search:64}") int efSearch) {
+
+        if ("exact".equalsIgnoreCase(type)) {
+            return new EmbeddingGallery(EmbeddingGallery.DEFAULT_DIM);
+        }
+        return new TieredFaceIndex(EmbeddingGallery.DEFAULT_DIM, exactThreshold, m, efConstruction, efSearch);
+    }
+
+    /** Durable copy of the gallery, replayed into the index at startup. */
+    @Bean
+    public EmbeddingStore embeddingStore(
+            @Value("${face.store.path:data/face-gallery.bin}") String path,
+            @Value("${face.model.version:w600k_r50}") String modelVersion) throws IOException {
+        return new EmbeddingStore(Path.of(path), EmbeddingGallery.DEFAULT_DIM, modelVersion);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.attendancesystem.config;
+
+import com.example.attendancesystem.service.InferenceAdmission;
+import com.example.attendancesystem.service.InferenceAdmission.Priority;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Early load shedding for the inference endpoints. Runs as a servlet filter,
+ * ahead of multipart parsing: when the class queue in {@link InferenceAdmission}
+ * is already full the request is answered with 429 + Retry-After before its
+ * upload is read. It takes no permit; the service does, around detection and
+ * embedding only, so slow uploads never occupy an inference slot.
+ */
+@Component
+@RequiredArgsConstructor
+public class InferenceAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Map<String, Priority> ENDPOINTS = Map.of(
+            "/api/face/recognize", Priority.RECOGNITION,
+            "/api/face/recognize-group", Priority.RECOGNITION,
+            "/api/face/register", Priority.ENROLLMENT,
+            "/api/face/detect-only", Priority.DEBUG
+    );
+
+    private final InferenceAdmission admission;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || priority(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            admission.rejectIfFull(priority(request));
+        } catch (InferenceAdmission.RejectedException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("⚠️ Server busy, retry in " + e.getRetryAfterSeconds() + " s");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static Priority priority(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+        return ENDPOINTS.get(path);
+    }
+}
@@ -1,40 +1,36 @@
 package com.example.attendancesystem.config;
 
-import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtSession;
+import com.example.attendancesystem.service.ModelRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.Path;
 
 @Configuration
 public class ModelConfig {
 
-    private OrtEnvironment env = OrtEnvironment.getEnvironment();
+    public static final String ARCFACE = "arcface";
 
-    private Path copyResourceToTemp(String resourcePath) throws IOException {
-        InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath);
-        if (is == null) {
-            throw new RuntimeException(resourcePath + " not found in resources/models/");
-        }
-        Path tempFile = Files.createTempFile("onnx_model_", ".onnx");
-        Files.copy(is, tempFile, StandardCopyOption.REPLACE_EXISTING);
-        return tempFile;
-    }
-
-    @Bean
-    public OrtSession retinaFaceSession() throws Exception {
-        Path modelPath = copyResourceToTemp("models/retinaface-resnet50.onnx");
-        return env.createSession(modelPath.toString(), new OrtSession.SessionOptions());
-    }
+    /** Single owner of all ONNX Runtime sessions; see face.models.* in application.properties. */
+    @Bean(destroyMethod = "close")
+    public ModelRegistry modelRegistry(
+            @Value("${face.models.cache-dir:data/model-cache}") String cacheDir,
+            @Value("${face.models.arcface.resource:models/w600k_r50.onnx}") String arcfaceResource,
+            @Value("${face.models.arcface.intra-op-threads:0}") int intraOpThreads,
+            @Value("${face.models.arcface.inter-op-threads:1}") int interOpThreads,
+            @Value("${face.models.arcface.optimization:EXTENDED_OPT}") String optLevel,
+            @Value("${face.models.arcface.cpu-arena:true}") boolean cpuArena,
+            @Value("${face.models.arcface.sessions:1}") int sessions) throws Exception {
 
-    @Bean
-    public OrtSession arcFaceSession() throws Exception {
-        Path modelPath = copyResourceToTemp("models/w600k_r50.onnx");
-        return env.createSession(modelPath.toString(), new OrtSession.SessionOptions());
+        ModelRegistry registry = new ModelRegistry(Path.of(cacheDir));
+        registry.register(new ModelRegistry.ModelSpec(ARCFACE, arcfaceResource)
+                .intraOpThreads(intraOpThreads)
+                .interOpThreads(interOpThreads)
+                .optLevel(OrtSession.SessionOptions.OptLevel.valueOf(optLevel))
+                .cpuArena(cpuArena)
+                .sessions(sessions));
+        return registry;
     }
 }
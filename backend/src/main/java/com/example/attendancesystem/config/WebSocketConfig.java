@@ -0,0 +1,40 @@
+package com.example.attendancesystem.config;
+
+import com.example.attendancesystem.controller.FaceStreamHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final FaceStreamHandler faceStreamHandler;
+
+    // ✅ Largest JPEG frame accepted on the stream
+    @Value("${face.stream.max-frame-bytes:2097152}")
+    private int maxFrameBytes;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(faceStreamHandler, "/api/face/stream")
+                .setAllowedOriginPatterns(
+                        "http://localhost:*",              // local dev
+                        "https://face1-frontend2-1.onrender.com*" // deployed frontend
+                );
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxFrameBytes);
+        container.setMaxTextMessageBufferSize(8192);
+        return container;
+    }
+}
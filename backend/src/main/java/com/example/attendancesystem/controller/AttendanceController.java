@@ -1,13 +1,32 @@
 package com.example.attendancesystem.controller;
 
-import com.example.attendancesystem.dto.StudentProjection;
+import com.example.attendancesystem.dto.AttendancePage;
+import com.example.attendancesystem.dto.AttendanceQuery;
 import com.example.attendancesystem.model.Attendance;
+import com.example.attendancesystem.model.Student;
+import com.example.attendancesystem.service.AttendanceExportService;
 import com.example.attendancesystem.service.AttendanceService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/attendance")
@@ -15,6 +34,8 @@ import java.util.List;
 public class AttendanceController {
 
     private final AttendanceService attendanceService;
+    private final AttendanceExportService exportService;
+    private final ObjectMapper objectMapper;
 
     /** ✅ Mark attendance */
     @PostMapping("/mark")
@@ -27,14 +48,32 @@ public class AttendanceController {
         return ResponseEntity.ok(attendanceService.markAttendance(name, rollNo, lecture, slot));
     }
 
-    /** ✅ Fetch student attendance (query param version) */
+    /**
+     * ✅ Student attendance history, newest first, one page at a time. year + month
+     * narrow it to that month; pass the returned nextCursor to get the next page.
+     */
     @GetMapping("/history/{rollNo}")
-    public ResponseEntity<List<Attendance>> getStudentAttendance(
+    public ResponseEntity<?> getStudentAttendance(
             @PathVariable String rollNo,
-            @RequestParam int year,
-            @RequestParam int month
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month,
+            @RequestParam(required = false) String lecture,
+            @RequestParam(required = false) Integer slot,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
     ) {
-        return ResponseEntity.ok(attendanceService.getStudentAttendance(rollNo, year, month));
+        if (year != null && month != null) {
+            from = LocalDate.of(year, month, 1);
+            to = from.withDayOfMonth(from.lengthOfMonth());
+        }
+        try {
+            AttendanceQuery query = new AttendanceQuery(rollNo, lecture, slot, from, to, cursor, limit);
+            return ResponseEntity.ok(attendanceService.getAttendancePage(query));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("⚠️ " + e.getMessage());
+        }
     }
 
     /** ✅ Fetch student attendance (path variable version for React) */
@@ -59,15 +98,171 @@ public class AttendanceController {
         return ResponseEntity.ok(attendanceService.clearAllAttendance());
     }
 
-    /** ✅ Fetch all distinct students */
+    /** ✅ Fetch all students */
     @GetMapping("/students")
-    public ResponseEntity<List<StudentProjection>> getStudents() {
+    public ResponseEntity<List<Student>> getStudents() {
         return ResponseEntity.ok(attendanceService.getAllStudents());
     }
 
-    /** ✅ Fetch all attendance records */
+    /** ✅ One student's month from the rollups: present/absent/working days and percentage */
+    @GetMapping("/rollup/student/{rollNo}/{month}/{year}")
+    public ResponseEntity<Map<String, Object>> getStudentRollup(
+            @PathVariable String rollNo,
+            @PathVariable int month,
+            @PathVariable int year
+    ) {
+        return ResponseEntity.ok(attendanceService.getStudentRollup(rollNo, year, month));
+    }
+
+    /** ✅ Whole class for a month: every student's percentage and the class average */
+    @GetMapping("/rollup/month/{month}/{year}")
+    public ResponseEntity<Map<String, Object>> getClassRollup(@PathVariable int month, @PathVariable int year) {
+        return ResponseEntity.ok(attendanceService.getClassRollup(year, month));
+    }
+
+    /** ✅ One lecture's sessions between from and to (default: this month) with its attendance percentage */
+    @GetMapping("/rollup/lecture/{lecture}")
+    public ResponseEntity<Map<String, Object>> getLectureRollup(
+            @PathVariable String lecture,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        LocalDate today = LocalDate.now();
+        if (from == null) from = today.withDayOfMonth(1);
+        if (to == null) to = today;
+        return ResponseEntity.ok(attendanceService.getLectureRollup(lecture, from, to));
+    }
+
+    /** ✅ Recompute rollups from the raw table (optionally only months between from and to) */
+    @PostMapping("/rollup/rebuild")
+    public ResponseEntity<?> rebuildRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        Map<String, Object> result = attendanceService.rebuildRollups(from, to);
+        if (result == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("⚠️ A rollup rebuild is already running");
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /** ✅ Write-behind writer: queue depth, batches, flush latency */
+    @GetMapping("/writer/stats")
+    public ResponseEntity<Map<String, Object>> getWriterStats() {
+        return ResponseEntity.ok(attendanceService.getWriterStats());
+    }
+
+    /** ✅ Day-scoped dedupe cache: marks held for today, hits answered without the database */
+    @GetMapping("/dedupe/stats")
+    public ResponseEntity<Map<String, Object>> getDedupeStats() {
+        return ResponseEntity.ok(attendanceService.getDedupeStats());
+    }
+
+    /**
+     * ✅ Attendance records, newest first: {items, nextCursor}. Filters are optional;
+     * limit defaults to 100 (max 1000).
+     */
     @GetMapping("/list")
-    public ResponseEntity<List<Attendance>> getAllAttendance() {
-        return ResponseEntity.ok(attendanceService.getAllAttendance());
+    public ResponseEntity<?> getAllAttendance(
+            @RequestParam(required = false) String rollNo,
+            @RequestParam(required = false) String lecture,
+            @RequestParam(required = false) Integer slot,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
+    ) {
+        try {
+            AttendanceQuery query = new AttendanceQuery(rollNo, lecture, slot, from, to, cursor, limit);
+            AttendancePage page = attendanceService.getAttendancePage(query);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("⚠️ " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ All matching records as one JSON array, written row by row from a database
+     * cursor (same filters as /list, no limit) so memory stays flat for any size.
+     */
+    @GetMapping(value = "/list/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> streamAttendance(
+            @RequestParam(required = false) String rollNo,
+            @RequestParam(required = false) String lecture,
+            @RequestParam(required = false) Integer slot,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor
+    ) {
+        AttendanceQuery query;
+        try {
+            query = new AttendanceQuery(rollNo, lecture, slot, from, to, cursor, null);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("⚠️ " + e.getMessage());
+        }
+
+        // The generator buffers and flushes on its own; no flush per row
+        ObjectWriter rows = objectMapper.writerFor(Attendance.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartArray();
+                attendanceService.streamAttendance(query, row -> writeRow(rows, json, row));
+                json.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * ✅ Download attendance as CSV (default) or XLSX, streamed from a database
+     * cursor in constant memory. Same filters as /list. CSV is gzip-encoded when
+     * the client accepts it; XLSX is already compressed.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportAttendance(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String rollNo,
+            @RequestParam(required = false) String lecture,
+            @RequestParam(required = false) Integer slot,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        boolean xlsx = "xlsx".equalsIgnoreCase(format);
+        if (!xlsx && !"csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().body("⚠️ format must be csv or xlsx");
+        }
+        AttendanceQuery query = new AttendanceQuery(rollNo, lecture, slot, from, to, null, null);
+        boolean gzip = !xlsx && acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("attendance-" + LocalDate.now() + (xlsx ? ".xlsx" : ".csv")).build());
+        headers.setContentType(xlsx
+                ? MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                : new MediaType("text", "csv", StandardCharsets.UTF_8));
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        StreamingResponseBody body = out -> {
+            if (xlsx) {
+                exportService.writeXlsx(query, out);
+            } else if (gzip) {
+                try (GZIPOutputStream zipped = new GZIPOutputStream(out, 64 * 1024)) {
+                    exportService.writeCsv(query, zipped);
+                }
+            } else {
+                exportService.writeCsv(query, out);
+            }
+        };
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    private static void writeRow(ObjectWriter rows, JsonGenerator json, Attendance row) {
+        try {
+            rows.writeValue(json, row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // client went away: abort the cursor
+        }
     }
 }
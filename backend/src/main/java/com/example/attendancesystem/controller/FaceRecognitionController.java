@@ -1,13 +1,27 @@
 package com.example.attendancesystem.controller;
 
 import com.example.attendancesystem.dto.FaceResult;
+import com.example.attendancesystem.dto.RecognitionLogQuery;
+import com.example.attendancesystem.service.DetectedFace;
 import com.example.attendancesystem.service.FaceRecognitionService;
+import com.example.attendancesystem.service.ImageDecoder;
 import com.example.attendancesystem.service.AttendanceService;
+import com.example.attendancesystem.service.BulkEnrollmentService;
+import com.example.attendancesystem.service.InferenceAdmission;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +35,20 @@ public class FaceRecognitionController {
     @Autowired
     private AttendanceService attendanceService; // ✅ Fixed injection
 
+    @Autowired
+    private BulkEnrollmentService bulkEnrollmentService;
+
+    @Autowired
+    private InferenceAdmission admission;
+
+    /** Inference shed by admission control: 429 with Retry-After */
+    @ExceptionHandler(InferenceAdmission.RejectedException.class)
+    public ResponseEntity<String> busy(InferenceAdmission.RejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body("⚠️ Server busy, retry in " + e.getRetryAfterSeconds() + " s");
+    }
+
     /** Register a student */
     @PostMapping("/register")
     public ResponseEntity<String> registerStudent(
@@ -30,15 +58,90 @@ public class FaceRecognitionController {
         return faceService.registerStudent(rollNo, name, files);
     }
 
-    /** Recognize single face + mark attendance */
-    @PostMapping("/recognize")
+    /**
+     * Bulk enrollment from a zip of rollNo_name_*.jpg photos sent as the raw request body
+     * (application/zip or application/octet-stream), up to face.enrollment.max-archive-bytes;
+     * returns the job. There is no multipart variant: intake archives are far over the
+     * multipart limits, and the body is spooled to disk once instead of twice.
+     */
+    @PostMapping(value = "/enroll/bulk", consumes = {"application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> enrollBulk(HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(bulkEnrollmentService.submitZip(request.getInputStream(), request.getContentLengthLong(), null));
+        } catch (BulkEnrollmentService.ArchiveTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("❌ " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("❌ " + e.getMessage());
+        }
+    }
+
+    /** Bulk enrollment from a server directory below face.enrollment.directory-root */
+    @PostMapping("/enroll/bulk/directory")
+    public ResponseEntity<?> enrollBulkDirectory(@RequestParam String path) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkEnrollmentService.submitDirectory(path));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("❌ " + e.getMessage());
+        }
+    }
+
+    /** Progress and per-file failures of one bulk enrollment job */
+    @GetMapping("/enroll/jobs/{id}")
+    public ResponseEntity<?> enrollmentJob(@PathVariable String id) {
+        Map<String, Object> status = bulkEnrollmentService.status(id);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    /** Recent bulk enrollment jobs */
+    @GetMapping("/enroll/jobs")
+    public ResponseEntity<List<Map<String, Object>>> enrollmentJobs() {
+        return ResponseEntity.ok(bulkEnrollmentService.statuses());
+    }
+
+    /**
+     * Recognize single face + mark attendance. Frames rejected before inference come back
+     * with status unchanged, too_dark, too_bright, blurry, face_too_small or low_confidence.
+     */
+    @PostMapping(value = "/recognize", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> recognizeStudent(
+            HttpServletRequest request,
             @RequestParam("file") MultipartFile file,
             @RequestParam("lecture") String lecture,
-            @RequestParam("slot") int slot) {
+            @RequestParam("slot") int slot,
+            @RequestParam(value = "client", required = false) String client) {
+
+        FaceResult result = faceService.recognizeStudentFace(file, lecture, clientId(request, client));
+        return toAttendanceResponse(result, lecture, slot);
+    }
+
+    /**
+     * Recognize single face from a raw JPEG body (lecture/slot as query params) + mark attendance.
+     * Bodies over spring.servlet.multipart.max-file-size get 413.
+     */
+    @PostMapping(value = "/recognize", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> recognizeStudentRaw(
+            HttpServletRequest request,
+            @RequestParam("lecture") String lecture,
+            @RequestParam("slot") int slot,
+            @RequestParam(value = "client", required = false) String client) throws IOException {
+
+        FaceResult result;
+        try {
+            result = faceService.recognizeStudentFace(
+                    request.getInputStream(), request.getContentLengthLong(), lecture, clientId(request, client));
+        } catch (ImageDecoder.ImageTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("⚠️ " + e.getMessage());
+        }
+        return toAttendanceResponse(result, lecture, slot);
+    }
 
-        FaceResult result = faceService.recognizeStudentFace(file, lecture);
+    /** Unchanged-frame detection is per client: an explicit client id, else the caller's address. */
+    private String clientId(HttpServletRequest request, String client) {
+        return client != null && !client.isBlank() ? client : request.getRemoteAddr();
+    }
 
+    private ResponseEntity<?> toAttendanceResponse(FaceResult result, String lecture, int slot) {
         if ("success".equals(result.getStatus())) {
             // ✅ Now passing slot correctly
             String attendanceStatus = attendanceService.markAttendance(
@@ -65,19 +168,97 @@ public class FaceRecognitionController {
         }
     }
 
+    /** Recognize every face in a classroom photo + mark attendance for each match */
+    @PostMapping("/recognize-group")
+    public ResponseEntity<?> recognizeGroup(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("lecture") String lecture,
+            @RequestParam("slot") int slot) {
+        try {
+            List<DetectedFace> faces = faceService.recognizeGroup(file, lecture);
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            int marked = 0;
+            for (DetectedFace face : faces) {
+                Map<String, Object> r = new HashMap<>();
+                r.put("x", face.getX());
+                r.put("y", face.getY());
+                r.put("width", face.getWidth());
+                r.put("height", face.getHeight());
+                r.put("rollNo", face.getRollNo() == null ? "N/A" : face.getRollNo());
+                r.put("name", face.getName());
+                r.put("accuracy", face.getAccuracy());
+
+                if ("success".equals(face.getStatus())) {
+                    r.put("status", attendanceService.markAttendance(face.getName(), face.getRollNo(), lecture, slot));
+                    marked++;
+                } else {
+                    r.put("status", face.getStatus());
+                }
+                results.add(r);
+            }
+
+            return ResponseEntity.ok(Map.of(
+                    "detected", faces.size(),
+                    "recognized", marked,
+                    "faces", results
+            ));
+        } catch (InferenceAdmission.RejectedException e) {
+            return busy(e);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body("❌ Error: " + e.getMessage());
+        }
+    }
+
     /** Debug: Detect only */
     @PostMapping("/detect-only")
     public ResponseEntity<String> testDetectOnly(@RequestParam("file") MultipartFile file) {
         try {
             return ResponseEntity.ok(faceService.testDetectOnly(file));
+        } catch (InferenceAdmission.RejectedException e) {
+            return busy(e);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("❌ Error: " + e.getMessage());
         }
     }
 
-    /** Get recognition logs */
+    /** Inference stats (ArcFace batch-size distribution, gallery size) */
+    @GetMapping("/stats")
+    public Map<String, Object> getInferenceStats() {
+        return faceService.getInferenceStats();
+    }
+
+    /** Native memory counters (JavaCPP bytes, RSS, untracked native) */
+    @GetMapping("/stats/native")
+    public Map<String, Object> getNativeMemoryStats() {
+        return faceService.getNativeMemoryStats();
+    }
+
+    /** Admission control: current limit, latency baseline, in-flight/queued/rejected per class */
+    @GetMapping("/stats/admission")
+    public Map<String, Object> getAdmissionStats() {
+        return admission.stats();
+    }
+
+    /**
+     * Recognition logs, newest first, one page at a time. lecture/rollNo and a
+     * from/to time range (ISO date-time, to exclusive) narrow it; pass the returned
+     * nextCursor to get the next page.
+     */
     @GetMapping("/logs")
-    public List<Map<String, Object>> getRecognitionLogs() {
-        return faceService.getRecognitionLogs();
+    public ResponseEntity<?> getRecognitionLogs(
+            @RequestParam(required = false) String lecture,
+            @RequestParam(required = false) String rollNo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            RecognitionLogQuery query = new RecognitionLogQuery(lecture, rollNo, from, to, cursor, limit);
+            return ResponseEntity.ok(faceService.getRecognitionLogs(query));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("⚠️ " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,198 @@
+package com.example.attendancesystem.controller;
+
+import com.example.attendancesystem.service.AttendanceService;
+import com.example.attendancesystem.service.FaceRecognitionService;
+import com.example.attendancesystem.service.FaceTracker;
+import com.example.attendancesystem.service.FrameGate;
+import com.example.attendancesystem.service.InferenceAdmission;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live scanner stream: ws://.../api/face/stream?lecture=MCE&slot=1
+ *
+ * Every binary message is one JPEG frame; the reply is a JSON text message with
+ * the quality-gate verdict and the tracked faces in that frame. Attendance is
+ * marked once per track, when its identity is confirmed. A text message {"lecture": "...", "slot": n} switches
+ * lecture/slot and starts a fresh tracker. A slot that is not a positive integer, in the URL or
+ * in a config message, closes the socket with 1007 (bad data). Frames go through the same admission
+ * control as /recognize; a shed frame is answered with {"busy": true, "retryAfterMs": n}.
+ */
+@Component
+public class FaceStreamHandler extends BinaryWebSocketHandler {
+
+    private static final String STATE = "faceStream";
+    private static final CloseStatus BAD_SLOT = CloseStatus.BAD_DATA.withReason("slot must be a positive integer");
+
+    @Autowired
+    private FaceRecognitionService faceService;
+
+    @Autowired
+    private AttendanceService attendanceService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // ✅ Tracker tuning (see FaceTracker)
+    @Value("${face.stream.track.iou-threshold:0.3}")
+    private double iouThreshold;
+    @Value("${face.stream.track.confirm-hits:2}")
+    private int confirmHits;
+    @Value("${face.stream.track.unknown-attempts:5}")
+    private int unknownAttempts;
+    @Value("${face.stream.track.refresh-frames:30}")
+    private int refreshFrames;
+    @Value("${face.stream.track.max-missed:5}")
+    private int maxMissed;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        MultiValueMap<String, String> params = session.getUri() == null ? null
+                : UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+        String lecture = params == null ? null : params.getFirst("lecture");
+        String slot = params == null ? null : params.getFirst("slot");
+        Integer parsed = slot == null ? Integer.valueOf(1) : parseSlot(slot);
+        if (parsed == null) {
+            session.close(BAD_SLOT);
+            return;
+        }
+        session.getAttributes().put(STATE, new StreamState(lecture, parsed));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        JsonNode cfg;
+        try {
+            cfg = objectMapper.readTree(message.getPayload());
+        } catch (JsonProcessingException e) {
+            session.close(CloseStatus.BAD_DATA.withReason("Config must be JSON like {\"lecture\": \"MCE\", \"slot\": 1}"));
+            return;
+        }
+        StreamState state = state(session);
+        int slot = state.slot;
+        if (!cfg.path("slot").isMissingNode()) {
+            Integer parsed = parseSlot(cfg.path("slot").asText());
+            if (parsed == null) {
+                session.close(BAD_SLOT);
+                return;
+            }
+            slot = parsed;
+        }
+        session.getAttributes().put(STATE, new StreamState(cfg.path("lecture").asText(state.lecture), slot));
+    }
+
+    /** A positive slot number, or null when the client sent anything else. */
+    private static Integer parseSlot(String slot) {
+        try {
+            int n = Integer.parseInt(slot.trim());
+            return n > 0 ? n : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        StreamState state = state(session);
+        Map<String, Object> reply = new LinkedHashMap<>();
+        try {
+            long embeddingsBefore = state.tracker.embeddings();
+            FaceTracker.Frame frame = faceService.recognizeFrame(
+                    message.getPayload(), state.tracker, state.lecture, session.getId());
+            List<FaceTracker.Track> tracks = frame.getTracks();
+
+            List<Map<String, Object>> faces = new ArrayList<>(tracks.size());
+            for (FaceTracker.Track t : tracks) faces.add(toJson(t, state));
+
+            reply.put("frame", state.tracker.frames());
+            reply.put("gate", frame.getGate().status());
+            reply.put("detected", tracks.size());
+            reply.put("embedded", state.tracker.embeddings() - embeddingsBefore);
+            reply.put("faces", faces);
+        } catch (InferenceAdmission.RejectedException e) {
+            // Shed under load: the frame is skipped, the client waits before sending the next one
+            reply.put("busy", true);
+            reply.put("retryAfterMs", e.getRetryAfterSeconds() * 1000);
+        } catch (Exception e) {
+            e.printStackTrace();
+            reply.put("error", e.getMessage());
+        }
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+    }
+
+    private Map<String, Object> toJson(FaceTracker.Track t, StreamState state) {
+        Map<String, Object> r = new HashMap<>();
+        r.put("trackId", t.getId());
+        r.put("x", t.getX());
+        r.put("y", t.getY());
+        r.put("width", t.getWidth());
+        r.put("height", t.getHeight());
+
+        if (!state.tracker.isConfirmed(t) && t.getGate() != FrameGate.Verdict.PASS) {
+            r.put("rollNo", "N/A");
+            r.put("name", t.getGate().message());
+            r.put("accuracy", 0.0);
+            r.put("status", t.getGate().status());
+            return r;
+        }
+
+        if (!state.tracker.isConfirmed(t)) {
+            r.put("rollNo", "N/A");
+            r.put("name", t.getRollNo() == null ? "Unknown" : "Verifying");
+            r.put("accuracy", t.getSimilarity());
+            r.put("status", t.getRollNo() == null ? "unknown" : "tracking");
+            return r;
+        }
+
+        r.put("rollNo", t.getRollNo());
+        r.put("name", t.getName() == null ? "Unregistered name" : t.getName());
+        r.put("accuracy", t.getSimilarity());
+        r.put("status", t.getName() == null ? "warning" : "success");
+
+        // ✅ Attendance once per confirmed track, not once per frame
+        if (t.getName() != null && !t.isAnnounced() && state.lecture != null) {
+            r.put("attendance", attendanceService.markAttendance(t.getName(), t.getRollNo(), state.lecture, state.slot));
+            t.setAnnounced(true);
+        }
+        return r;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        session.getAttributes().remove(STATE);
+        faceService.releaseClient(session.getId());
+    }
+
+    private StreamState state(WebSocketSession session) {
+        return (StreamState) session.getAttributes().get(STATE);
+    }
+
+    /* ---------------- Helper ---------------- */
+    private final class StreamState {
+        final String lecture;
+        final int slot;
+        final FaceTracker tracker = new FaceTracker(iouThreshold, confirmHits, unknownAttempts, refreshFrames, maxMissed);
+
+        StreamState(String lecture, int slot) {
+            this.lecture = lecture;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.attendancesystem.controller;
+
+import com.example.attendancesystem.service.RosterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/lectures")
+@RequiredArgsConstructor
+public class LectureController {
+
+    private final RosterService rosterService;
+
+    /** ✅ Roll numbers enrolled in a lecture */
+    @GetMapping("/{lecture}/roster")
+    public ResponseEntity<List<String>> getRoster(@PathVariable String lecture) {
+        return ResponseEntity.ok(rosterService.roster(lecture));
+    }
+
+    /** ✅ Enroll students (recognition for this lecture then searches only its roster) */
+    @PostMapping("/{lecture}/roster")
+    public ResponseEntity<String> enroll(@PathVariable String lecture, @RequestBody List<String> rollNos) {
+        int added = rosterService.enroll(lecture, rollNos);
+        return ResponseEntity.ok("✅ Enrolled " + added + " student(s) in " + lecture);
+    }
+
+    /** ✅ Remove one student from a lecture */
+    @DeleteMapping("/{lecture}/roster/{rollNo}")
+    public ResponseEntity<String> unenroll(@PathVariable String lecture, @PathVariable String rollNo) {
+        if (!rosterService.unenroll(lecture, rollNo)) {
+            return ResponseEntity.badRequest().body("⚠️ " + rollNo + " is not enrolled in " + lecture);
+        }
+        return ResponseEntity.ok("✅ Removed " + rollNo + " from " + lecture);
+    }
+
+    /** ✅ Lectures with a roster and how many of their students have a registered face */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getLectures() {
+        return ResponseEntity.ok(rosterService.stats());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.attendancesystem.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+/**
+ * Multipart bodies over spring.servlet.multipart.max-file-size / max-request-size
+ * are rejected while the request is parsed, before any controller runs, so the
+ * mapping has to live in an advice. Answers 413 like the raw-body routes.
+ */
+@RestControllerAdvice
+public class UploadLimitHandler {
+
+    @Value("${spring.servlet.multipart.max-file-size:1MB}")
+    private String maxFileSize;
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<String> tooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body("❌ Upload larger than " + maxFileSize);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.attendancesystem.dto;
+
+import com.example.attendancesystem.model.Attendance;
+
+import java.util.List;
+
+/** One page of attendance rows; nextCursor is null on the last page. */
+public class AttendancePage {
+    private final List<Attendance> items;
+    private final String nextCursor;
+
+    public AttendancePage(List<Attendance> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Attendance> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.attendancesystem.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Filters and position for an attendance listing. Rows come newest first
+ * (date DESC, id DESC); the cursor is the (date, id) of the last row already
+ * returned, encoded as an opaque string.
+ */
+public class AttendanceQuery {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private String rollNo;
+    private String lecture;
+    private Integer slot;
+    private LocalDate from;
+    private LocalDate to;
+    private LocalDate afterDate;
+    private Long afterId;
+    private int limit = DEFAULT_LIMIT;
+
+    public AttendanceQuery() {}
+
+    public AttendanceQuery(String rollNo, String lecture, Integer slot, LocalDate from, LocalDate to,
+                           String cursor, Integer limit) {
+        this.rollNo = rollNo;
+        this.lecture = lecture;
+        this.slot = slot;
+        this.from = from;
+        this.to = to;
+        setCursor(cursor);
+        if (limit != null) setLimit(limit);
+    }
+
+    /** Cursor for the position right after the given row. */
+    public static String cursorOf(LocalDate date, Long id) {
+        String raw = date + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Decodes a cursor from a previous page; null or blank starts from the newest row. */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            afterDate = null;
+            afterId = null;
+            return;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            afterDate = LocalDate.parse(raw.substring(0, sep));
+            afterId = Long.parseLong(raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public void setLimit(int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        this.limit = Math.min(limit, MAX_LIMIT);
+    }
+
+    public String getRollNo() { return rollNo; }
+    public void setRollNo(String rollNo) { this.rollNo = rollNo; }
+    public String getLecture() { return lecture; }
+    public void setLecture(String lecture) { this.lecture = lecture; }
+    public Integer getSlot() { return slot; }
+    public void setSlot(Integer slot) { this.slot = slot; }
+    public LocalDate getFrom() { return from; }
+    public void setFrom(LocalDate from) { this.from = from; }
+    public LocalDate getTo() { return to; }
+    public void setTo(LocalDate to) { this.to = to; }
+    public LocalDate getAfterDate() { return afterDate; }
+    public Long getAfterId() { return afterId; }
+    public int getLimit() { return limit; }
+}
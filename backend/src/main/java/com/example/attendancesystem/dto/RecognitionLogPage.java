@@ -0,0 +1,24 @@
+package com.example.attendancesystem.dto;
+
+import com.example.attendancesystem.model.RecognitionLog;
+
+import java.util.List;
+
+/** One page of recognition log rows; nextCursor is null on the last page. */
+public class RecognitionLogPage {
+    private final List<RecognitionLog> items;
+    private final String nextCursor;
+
+    public RecognitionLogPage(List<RecognitionLog> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RecognitionLog> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.attendancesystem.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Filters and position for the recognition log. Rows come newest first
+ * (loggedAt DESC, id DESC); the cursor is the (loggedAt, id) of the last row
+ * already returned, encoded as an opaque string.
+ */
+public class RecognitionLogQuery {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private String lecture;
+    private String rollNo;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private LocalDateTime afterLoggedAt;
+    private Long afterId;
+    private int limit = DEFAULT_LIMIT;
+
+    public RecognitionLogQuery() {}
+
+    public RecognitionLogQuery(String lecture, String rollNo, LocalDateTime from, LocalDateTime to,
+                               String cursor, Integer limit) {
+        this.lecture = lecture;
+        this.rollNo = rollNo;
+        this.from = from;
+        this.to = to;
+        setCursor(cursor);
+        if (limit != null) setLimit(limit);
+    }
+
+    /** Cursor for the position right after the given row. */
+    public static String cursorOf(LocalDateTime loggedAt, Long id) {
+        String raw = loggedAt + "|" + id; // ISO date-times contain ':'
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Decodes a cursor from a previous page; null or blank starts from the newest row. */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            afterLoggedAt = null;
+            afterId = null;
+            return;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            afterLoggedAt = LocalDateTime.parse(raw.substring(0, sep));
+            afterId = Long.parseLong(raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public void setLimit(int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        this.limit = Math.min(limit, MAX_LIMIT);
+    }
+
+    public String getLecture() { return lecture; }
+    public void setLecture(String lecture) { this.lecture = lecture; }
+    public String getRollNo() { return rollNo; }
+    public void setRollNo(String rollNo) { this.rollNo = rollNo; }
+    public LocalDateTime getFrom() { return from; }
+    public void setFrom(LocalDateTime from) { this.from = from; }
+    public LocalDateTime getTo() { return to; }
+    public void setTo(LocalDateTime to) { this.to = to; }
+    public LocalDateTime getAfterLoggedAt() { return afterLoggedAt; }
+    public Long getAfterId() { return afterId; }
+    public int getLimit() { return limit; }
+}
@@ -1,6 +0,0 @@
-package com.example.attendancesystem.dto;
-
-public interface StudentProjection {
-    String getRollNo();
-    String getName();
-}
@@ -11,7 +11,13 @@ import java.time.LocalTime;
         name = "attendance",
         uniqueConstraints = @UniqueConstraint(
                 columnNames = {"rollNo", "date", "lecture", "slot"}
-        )
+        ),
+        // Keyset pagination (date DESC, id DESC) with and without a student/lecture filter
+        indexes = {
+                @Index(name = "idx_attendance_date_id", columnList = "date, id"),
+                @Index(name = "idx_attendance_roll_date_id", columnList = "rollNo, date, id"),
+                @Index(name = "idx_attendance_lecture_date_id", columnList = "lecture, date, id")
+        }
 )
 @Getter
 @Setter
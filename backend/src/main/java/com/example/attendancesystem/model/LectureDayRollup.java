@@ -0,0 +1,44 @@
+package com.example.attendancesystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * One lecture on one day: distinct students present and total marks (all slots).
+ * Maintained by AttendanceRollupService; never written through JPA.
+ */
+@Entity
+@Table(
+        name = "attendance_lecture_day",
+        indexes = @Index(name = "idx_attendance_lecture_day_date", columnList = "date")
+)
+@IdClass(LectureDayRollup.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LectureDayRollup {
+
+    @Id
+    private String lecture;
+
+    @Id
+    private LocalDate date;
+
+    @Column(nullable = false)
+    private Integer present;
+
+    @Column(nullable = false)
+    private Integer marks;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String lecture;
+        private LocalDate date;
+    }
+}
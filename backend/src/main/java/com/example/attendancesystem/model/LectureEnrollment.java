@@ -0,0 +1,28 @@
+package com.example.attendancesystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/** One student on one lecture's roster. */
+@Entity
+@Table(
+        name = "lecture_roster",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"lecture", "rollNo"}),
+        indexes = @Index(name = "idx_lecture_roster_roll_no", columnList = "rollNo")
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LectureEnrollment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String lecture;
+
+    @Column(nullable = false)
+    private String rollNo;
+}
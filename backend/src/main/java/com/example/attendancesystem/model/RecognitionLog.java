@@ -0,0 +1,38 @@
+package com.example.attendancesystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "recognition_log",
+        // Keyset pagination (loggedAt DESC, id DESC) with and without a lecture filter
+        indexes = {
+                @Index(name = "idx_recognition_log_logged_at_id", columnList = "loggedAt, id"),
+                @Index(name = "idx_recognition_log_lecture_logged_at_id", columnList = "lecture, loggedAt, id")
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecognitionLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String rollNo;
+
+    private String name;
+
+    private String lecture;
+
+    private Float accuracy;
+
+    @Column(nullable = false)
+    private LocalDateTime loggedAt;
+
+}
@@ -0,0 +1,44 @@
+package com.example.attendancesystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * One student's attendance in one month: distinct days present and total marks.
+ * Maintained by AttendanceRollupService; never written through JPA.
+ */
+@Entity
+@Table(name = "attendance_student_month")
+@IdClass(StudentMonthRollup.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentMonthRollup {
+
+    @Id
+    private String rollNo;
+
+    @Id
+    private Integer year;
+
+    @Id
+    private Integer month;
+
+    @Column(nullable = false)
+    private Integer presentDays;
+
+    @Column(nullable = false)
+    private Integer marks;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String rollNo;
+        private Integer year;
+        private Integer month;
+    }
+}
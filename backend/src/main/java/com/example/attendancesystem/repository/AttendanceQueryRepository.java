@@ -0,0 +1,108 @@
+package com.example.attendancesystem.repository;
+
+import com.example.attendancesystem.dto.AttendanceQuery;
+import com.example.attendancesystem.model.Attendance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keyset-paginated attendance reads.
+ *
+ * Rows are ordered by (date DESC, id DESC) and a page continues with
+ * (date, id) < (:afterDate, :afterId), so every page is an index range scan on
+ * one of the composite indexes declared on {@link Attendance} instead of an
+ * OFFSET that re-reads everything before it.
+ */
+@Repository
+public class AttendanceQueryRepository {
+
+    private static final String SELECT =
+            "SELECT id, name, roll_no, lecture, slot, date, time FROM attendance";
+
+    private static final RowMapper<Attendance> ROW = (rs, i) -> {
+        Date date = rs.getDate("date");
+        Time time = rs.getTime("time");
+        int slot = rs.getInt("slot");
+        boolean noSlot = rs.wasNull();
+        return new Attendance(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("roll_no"),
+                rs.getString("lecture"),
+                noSlot ? null : slot,
+                date == null ? null : date.toLocalDate(),
+                time == null ? null : time.toLocalTime());
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate cursorJdbc;
+
+    public AttendanceQueryRepository(DataSource dataSource,
+                                     @Value("${attendance.stream.fetch-size:1000}") int fetchSize) {
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+        // Postgres only streams with a fetch size inside a transaction; otherwise it buffers the whole result
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(fetchSize);
+        this.cursorJdbc = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    /** Up to limit + 1 rows after the cursor; the extra row only tells the caller another page exists. */
+    public List<Attendance> findPage(AttendanceQuery q) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT + where(q, params) + " ORDER BY date DESC, id DESC LIMIT :limit";
+        params.addValue("limit", q.getLimit() + 1);
+        return jdbc.query(sql, params, ROW);
+    }
+
+    /** Every matching row after the cursor, read through a server-side cursor one fetch at a time. */
+    public long stream(AttendanceQuery q, Consumer<Attendance> sink) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT + where(q, params) + " ORDER BY date DESC, id DESC";
+        long[] rows = {0};
+        cursorJdbc.query(sql, params, rs -> {
+            sink.accept(ROW.mapRow(rs, 0));
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    private static String where(AttendanceQuery q, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder(" WHERE 1 = 1");
+        if (q.getRollNo() != null) {
+            sql.append(" AND roll_no = :rollNo");
+            params.addValue("rollNo", q.getRollNo());
+        }
+        if (q.getLecture() != null) {
+            sql.append(" AND lecture = :lecture");
+            params.addValue("lecture", q.getLecture());
+        }
+        if (q.getSlot() != null) {
+            sql.append(" AND slot = :slot");
+            params.addValue("slot", q.getSlot());
+        }
+        if (q.getFrom() != null) {
+            sql.append(" AND date >= :from");
+            params.addValue("from", Date.valueOf(q.getFrom()));
+        }
+        if (q.getTo() != null) {
+            sql.append(" AND date <= :to");
+            params.addValue("to", Date.valueOf(q.getTo()));
+        }
+        if (q.getAfterDate() != null) {
+            sql.append(" AND (date, id) < (:afterDate, :afterId)");
+            params.addValue("afterDate", Date.valueOf(q.getAfterDate()));
+            params.addValue("afterId", q.getAfterId());
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.attendancesystem.repository;
+
+import com.example.attendancesystem.model.LectureEnrollment;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface LectureRepositary extends JpaRepository<LectureEnrollment, Long> {
+
+    List<LectureEnrollment> findByLecture(String lecture);
+
+    long countByLecture(String lecture);
+
+    boolean existsByLectureAndRollNo(String lecture, String rollNo);
+
+    // Remove one student from a roster
+    long deleteByLectureAndRollNo(String lecture, String rollNo);
+}
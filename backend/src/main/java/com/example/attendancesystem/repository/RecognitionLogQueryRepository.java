@@ -0,0 +1,78 @@
+package com.example.attendancesystem.repository;
+
+import com.example.attendancesystem.dto.RecognitionLogQuery;
+import com.example.attendancesystem.model.RecognitionLog;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Keyset-paginated recognition log reads, the same way as
+ * {@link AttendanceQueryRepository}: rows ordered by (logged_at DESC, id DESC),
+ * a page continuing with (logged_at, id) < (:afterLoggedAt, :afterId), so each
+ * page is a range scan on one of the indexes declared on {@link RecognitionLog}.
+ */
+@Repository
+public class RecognitionLogQueryRepository {
+
+    private static final String SELECT =
+            "SELECT id, roll_no, name, lecture, accuracy, logged_at FROM recognition_log";
+
+    private static final RowMapper<RecognitionLog> ROW = (rs, i) -> {
+        float accuracy = rs.getFloat("accuracy");
+        boolean noAccuracy = rs.wasNull();
+        Timestamp loggedAt = rs.getTimestamp("logged_at");
+        return new RecognitionLog(
+                rs.getLong("id"),
+                rs.getString("roll_no"),
+                rs.getString("name"),
+                rs.getString("lecture"),
+                noAccuracy ? null : accuracy,
+                loggedAt == null ? null : loggedAt.toLocalDateTime());
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public RecognitionLogQueryRepository(DataSource dataSource) {
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    /** Up to limit + 1 rows after the cursor; the extra row only tells the caller another page exists. */
+    public List<RecognitionLog> findPage(RecognitionLogQuery q) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT + where(q, params) + " ORDER BY logged_at DESC, id DESC LIMIT :limit";
+        params.addValue("limit", q.getLimit() + 1);
+        return jdbc.query(sql, params, ROW);
+    }
+
+    private static String where(RecognitionLogQuery q, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder(" WHERE 1 = 1");
+        if (q.getLecture() != null) {
+            sql.append(" AND lecture = :lecture");
+            params.addValue("lecture", q.getLecture());
+        }
+        if (q.getRollNo() != null) {
+            sql.append(" AND roll_no = :rollNo");
+            params.addValue("rollNo", q.getRollNo());
+        }
+        if (q.getFrom() != null) {
+            sql.append(" AND logged_at >= :from");
+            params.addValue("from", Timestamp.valueOf(q.getFrom()));
+        }
+        if (q.getTo() != null) {
+            sql.append(" AND logged_at < :to");
+            params.addValue("to", Timestamp.valueOf(q.getTo()));
+        }
+        if (q.getAfterLoggedAt() != null) {
+            sql.append(" AND (logged_at, id) < (:afterLoggedAt, :afterId)");
+            params.addValue("afterLoggedAt", Timestamp.valueOf(q.getAfterLoggedAt()));
+            params.addValue("afterId", q.getAfterId());
+        }
+        return sql.toString();
+    }
+}
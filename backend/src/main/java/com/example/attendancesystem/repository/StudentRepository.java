@@ -4,7 +4,12 @@ import com.example.attendancesystem.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface StudentRepository extends JpaRepository<Student, Long> {
+public interface StudentRepository extends JpaRepository<Student, String> {
     Student findByRollNo(String rollNo);
+
+    // Sidebar list (primary-key order)
+    List<Student> findAllByOrderByRollNoAsc();
 }
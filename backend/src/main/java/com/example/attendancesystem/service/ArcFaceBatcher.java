@@ -0,0 +1,207 @@
+package com.example.attendancesystem.service;
+
+import ai.onnxruntime.OrtException;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent single-face embedding requests into batched ArcFace runs.
+ *
+ * A dispatcher thread takes the first waiting crop, keeps collecting until the
+ * window elapses or the batch is full, runs the batch once and completes every
+ * caller's future with its own row. Callers see a plain blocking call.
+ *
+ * The crop belongs to the caller, whose PointerScope frees it on return, so a
+ * caller must not leave while a dispatcher may still read it. An interrupted
+ * caller withdraws its request if no dispatcher has claimed it yet (dispatchers
+ * skip withdrawn entries without touching the crop); otherwise it waits for the
+ * batch uninterruptibly and re-asserts the interrupt. A request offered while
+ * the batcher shuts down is withdrawn the same way, since no dispatcher may be
+ * left to drain it.
+ */
+public class ArcFaceBatcher implements Closeable {
+
+    /** Runs ArcFace on a list of face crops and returns one normalized embedding per crop. */
+    public interface BatchRunner {
+        float[][] run(List<Mat> faces) throws OrtException;
+    }
+
+    private static final int QUEUE_PER_BATCH = 64;
+
+    private final BatchRunner runner;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue;
+    private final List<Thread> dispatchers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicLongArray batchSizes;
+
+    /** One dispatcher thread per ArcFace session shard, so shards run batches side by side. */
+    public ArcFaceBatcher(BatchRunner runner, long windowMicros, int maxBatch, int dispatcherCount) {
+        this.runner = runner;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = new ArrayBlockingQueue<>(this.maxBatch * QUEUE_PER_BATCH);
+        this.batchSizes = new AtomicLongArray(this.maxBatch + 1);
+        for (int i = 0; i < Math.max(1, dispatcherCount); i++) {
+            Thread t = new Thread(this::dispatchLoop, "arcface-batcher-" + i);
+            t.setDaemon(true);
+            t.start();
+            dispatchers.add(t);
+        }
+    }
+
+    /** Blocks until this face's embedding has been computed as part of some batch. */
+    public float[] embed(Mat face) throws OrtException {
+        if (!running) throw new OrtException("ArcFace batcher is shut down");
+        Pending p = new Pending(face);
+        if (!queue.offer(p)) throw new OrtException("ArcFace queue is full (" + queue.size() + " waiting)");
+        requests.increment();
+        // close() may have run between the check and the offer, after the dispatchers drained the queue
+        if (!running && p.state.compareAndSet(Pending.QUEUED, Pending.CANCELLED)) {
+            throw new OrtException("ArcFace batcher is shut down");
+        }
+        try {
+            return p.result.get();
+        } catch (InterruptedException e) {
+            if (p.state.compareAndSet(Pending.QUEUED, Pending.CANCELLED)) {
+                Thread.currentThread().interrupt();
+                throw new OrtException("Interrupted while waiting for ArcFace batch");
+            }
+            // A dispatcher holds the crop: wait it out before the caller's scope frees it
+            try {
+                return awaitUninterruptibly(p);
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+        } catch (ExecutionException e) {
+            throw failure(e);
+        }
+    }
+
+    private static float[] awaitUninterruptibly(Pending p) throws OrtException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return p.result.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw failure(e);
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OrtException failure(ExecutionException e) {
+        if (e.getCause() instanceof OrtException) return (OrtException) e.getCause();
+        return new OrtException("ArcFace batch failed: " + e.getCause());
+    }
+
+    private void dispatchLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        List<Mat> faces = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null || !first.claim()) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    if (next.claim()) batch.add(next); // withdrawn entries are dropped unread
+                }
+
+                for (Pending p : batch) faces.add(p.face);
+                try {
+                    float[][] out = runner.run(faces);
+                    for (int i = 0; i < batch.size(); i++) batch.get(i).result.complete(out[i]);
+                } catch (Exception e) {
+                    for (Pending p : batch) p.result.completeExceptionally(e);
+                }
+                batches.increment();
+                batchSizes.incrementAndGet(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Pending p : batch) p.result.completeExceptionally(new OrtException("ArcFace batcher is shut down"));
+                break;
+            } finally {
+                batch.clear();
+                faces.clear();
+            }
+        }
+
+        OrtException closed = new OrtException("ArcFace batcher is shut down");
+        for (Pending p; (p = queue.poll()) != null; ) p.result.completeExceptionally(closed);
+    }
+
+    /** Requests served, batches run and the achieved batch-size distribution. */
+    public Map<String, Object> stats() {
+        long b = batches.sum();
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        long weighted = 0;
+        for (int size = 1; size <= maxBatch; size++) {
+            long count = batchSizes.get(size);
+            weighted += count * size;
+            if (count > 0) histogram.put(String.valueOf(size), count);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMicros", TimeUnit.NANOSECONDS.toMicros(windowNanos));
+        stats.put("maxBatch", maxBatch);
+        stats.put("queueDepth", queue.size());
+        stats.put("requests", requests.sum());
+        stats.put("batches", b);
+        stats.put("meanBatchSize", b == 0 ? 0.0 : weighted / (double) b);
+        stats.put("batchSizeHistogram", histogram);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread t : dispatchers) t.interrupt();
+    }
+
+    /* ---------------- Helper ---------------- */
+    private static final class Pending {
+        static final int QUEUED = 0;
+        static final int CLAIMED = 1;
+        static final int CANCELLED = 2;
+
+        final Mat face;
+        final CompletableFuture<float[]> result = new CompletableFuture<>();
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Pending(Mat face) {
+            this.face = face;
+        }
+
+        /** Dispatcher side: true if the caller is still waiting, and from now on it will wait for the result. */
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.attendancesystem.service;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs ArcFace over face crops using a bounded set of {@link ArcFaceWorkspace}s.
+ *
+ * Workspaces are created on first demand up to the configured count and then
+ * recycled, so once warm an embedding run allocates only the float[] rows it
+ * returns. Lists longer than a workspace's capacity run in capacity-sized chunks.
+ */
+public class ArcFaceEmbedder implements Closeable {
+
+    private final ModelRegistry registry;
+    private final String model;
+    private final int batchCapacity;
+    private final int maxWorkspaces;
+    private final BlockingQueue<ArcFaceWorkspace> idle;
+    private final List<ArcFaceWorkspace> all = new ArrayList<>();
+
+    /** workspaces 0 = one per CPU core. */
+    public ArcFaceEmbedder(ModelRegistry registry, String model, int batchCapacity, int workspaces) {
+        this.registry = registry;
+        this.model = model;
+        this.batchCapacity = Math.max(1, batchCapacity);
+        this.maxWorkspaces = workspaces > 0 ? workspaces : Runtime.getRuntime().availableProcessors();
+        this.idle = new ArrayBlockingQueue<>(maxWorkspaces);
+    }
+
+    /** One L2-normalized embedding per face, in input order. */
+    public float[][] embed(List<Mat> faces) throws OrtException {
+        float[][] out = new float[faces.size()][];
+        if (out.length == 0) return out;
+
+        ArcFaceWorkspace ws = borrow();
+        try {
+            for (int from = 0; from < out.length; from += ws.capacity()) {
+                int n = Math.min(ws.capacity(), out.length - from);
+                for (int i = 0; i < n; i++) ws.put(i, faces.get(from + i));
+                try (OrtSession.Result ignored = ws.run(registry.session(model), n)) {
+                    for (int i = 0; i < n; i++) out[from + i] = ws.embedding(i);
+                }
+            }
+        } finally {
+            idle.offer(ws);
+        }
+        return out;
+    }
+
+    private ArcFaceWorkspace borrow() throws OrtException {
+        ArcFaceWorkspace ws = idle.poll();
+        if (ws != null) return ws;
+
+        synchronized (all) {
+            if (all.size() < maxWorkspaces) {
+                ws = new ArcFaceWorkspace(registry.environment(), registry.inputName(model),
+                        registry.outputName(model), batchCapacity);
+                all.add(ws);
+                return ws;
+            }
+        }
+
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrtException("Interrupted while waiting for an ArcFace workspace");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (all) {
+            stats.put("workspaces", all.size());
+            stats.put("maxWorkspaces", maxWorkspaces);
+            stats.put("idle", idle.size());
+            stats.put("batchCapacity", batchCapacity);
+            stats.put("nativeBytes", all.stream().mapToLong(ArcFaceWorkspace::nativeBytes).sum());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        synchronized (all) {
+            for (ArcFaceWorkspace ws : all) ws.close();
+            all.clear();
+            idle.clear();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.attendancesystem.service;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reusable buffers for ArcFace runs of up to {@code capacity} faces.
+ *
+ * The resize target is a 112x112 BGR Mat over a direct buffer this workspace owns,
+ * so OpenCV writes each crop straight into memory Java can bulk-read (a Mat of the
+ * right size and type is never reallocated by resize). Pixels go through a lookup
+ * table into normalized RGB CHW floats in a direct input buffer that ONNX Runtime
+ * reads in place. Input and output tensors for each batch size are created once
+ * over slices of those buffers and bound again on every later run.
+ *
+ * Workspaces are often first created inside a request's PointerScope, so the
+ * native objects they own are kept out of it and freed only by {@link #close}.
+ *
+ * Not thread-safe: one workspace per concurrent run.
+ */
+public class ArcFaceWorkspace implements Closeable {
+
+    public static final int SIDE = 112;
+    public static final int DIM = 512;
+    public static final int FACE_LEN = 3 * SIDE * SIDE;
+    private static final int PLANE = SIDE * SIDE;
+
+    // (v - 127.5) / 127.5 for every byte value
+    private static final float[] NORMALIZED = new float[256];
+    static {
+        for (int v = 0; v < 256; v++) NORMALIZED[v] = (v - 127.5f) / 127.5f;
+    }
+
+    private final OrtEnvironment env;
+    private final String inputName;
+    private final String outputName;
+    private final int capacity;
+
+    private final ByteBuffer pixelBuffer;
+    private final BytePointer pixelPointer;
+    private final Mat resized;
+    private final Mat converted = NativeMemory.keep(new Mat());
+    private final Size size = NativeMemory.keep(new Size(SIDE, SIDE));
+    private final byte[] pixels = new byte[FACE_LEN];
+    private final float[] chw = new float[FACE_LEN];
+
+    private final FloatBuffer input;
+    private final FloatBuffer output;
+    private final Bound[] bound;
+
+    public ArcFaceWorkspace(OrtEnvironment env, String inputName, String outputName, int capacity) {
+        this.env = env;
+        this.inputName = inputName;
+        this.outputName = outputName;
+        this.capacity = Math.max(1, capacity);
+
+        this.pixelBuffer = ByteBuffer.allocateDirect(FACE_LEN);
+        this.pixelPointer = new BytePointer(pixelBuffer);
+        this.resized = NativeMemory.keep(new Mat(SIDE, SIDE, opencv_core.CV_8UC3, pixelPointer));
+
+        this.input = ByteBuffer.allocateDirect(this.capacity * FACE_LEN * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.output = ByteBuffer.allocateDirect(this.capacity * DIM * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.bound = new Bound[this.capacity + 1];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Native bytes held by this workspace (pixels, input and output tensors). */
+    public long nativeBytes() {
+        return FACE_LEN + (long) capacity * (FACE_LEN + DIM) * Float.BYTES;
+    }
+
+    /** Resizes a BGR face crop and writes it as normalized RGB CHW into batch slot {@code slot}. */
+    public void put(int slot, Mat face) {
+        Mat src = face;
+        if (face.type() != opencv_core.CV_8UC3) {
+            opencv_imgproc.cvtColor(face, converted,
+                    face.channels() == 4 ? opencv_imgproc.COLOR_BGRA2BGR : opencv_imgproc.COLOR_GRAY2BGR);
+            src = converted;
+        }
+        opencv_imgproc.resize(src, resized, size);
+        pixelBuffer.get(0, pixels);
+
+        for (int p = 0, i = 0; p < PLANE; p++, i += 3) {
+            chw[p] = NORMALIZED[pixels[i + 2] & 0xFF];
+            chw[PLANE + p] = NORMALIZED[pixels[i + 1] & 0xFF];
+            chw[2 * PLANE + p] = NORMALIZED[pixels[i] & 0xFF];
+        }
+        input.put(slot * FACE_LEN, chw);
+    }
+
+    /**
+     * Runs the first n slots through the session. The embeddings land in this
+     * workspace's output buffer; read them with {@link #embedding} before closing
+     * the result or reusing the workspace.
+     */
+    public OrtSession.Result run(OrtSession session, int n) throws OrtException {
+        Bound b = bind(n);
+        return session.run(b.inputs, b.outputs);
+    }
+
+    /** The L2-normalized embedding of a slot from the last run. */
+    public float[] embedding(int slot) {
+        float[] v = new float[DIM];
+        output.get(slot * DIM, v);
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        float inv = (float) (1.0 / (Math.sqrt(norm) + 1e-6));
+        for (int i = 0; i < DIM; i++) v[i] *= inv;
+        return v;
+    }
+
+    private Bound bind(int n) throws OrtException {
+        if (n < 1 || n > capacity) throw new IllegalArgumentException("Batch of " + n + " exceeds capacity " + capacity);
+        Bound b = bound[n];
+        if (b == null) {
+            OnnxTensor in = OnnxTensor.createTensor(env, input.slice(0, n * FACE_LEN), new long[]{n, 3, SIDE, SIDE});
+            OnnxTensor out = OnnxTensor.createTensor(env, output.slice(0, n * DIM), new long[]{n, DIM});
+            b = new Bound(in, out, Collections.singletonMap(inputName, in), Collections.singletonMap(outputName, out));
+            bound[n] = b;
+        }
+        return b;
+    }
+
+    @Override
+    public void close() {
+        for (Bound b : bound) {
+            if (b == null) continue;
+            b.in.close();
+            b.out.close();
+        }
+        size.close();
+        converted.close();
+        resized.close();
+        pixelPointer.close();
+    }
+
+    /* ---------------- Helper ---------------- */
+    private static final class Bound {
+        final OnnxTensor in;
+        final OnnxTensor out;
+        final Map<String, OnnxTensor> inputs;
+        final Map<String, OnnxTensor> outputs;
+
+        Bound(OnnxTensor in, OnnxTensor out, Map<String, OnnxTensor> inputs, Map<String, OnnxTensor> outputs) {
+            this.in = in;
+            this.out = out;
+            this.inputs = inputs;
+            this.outputs = outputs;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.attendancesystem.service;
+
+import com.example.attendancesystem.model.Attendance;
+import com.example.attendancesystem.repository.AttendanceRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+/**
+ * Today's already-marked (rollNo, lecture, slot) keys, so repeat recognitions are
+ * answered without touching the database.
+ *
+ * Roll numbers and lectures are interned to ints and each key packs into one long
+ * (roll id << 32 | lecture id << 16 | slot + 1) stored in a primitive open-addressing
+ * set. The set belongs to one date: the first call after midnight starts an empty
+ * set for the new day. It is warmed from today's rows at startup.
+ */
+@Component
+@RequiredArgsConstructor
+public class AttendanceDedupeCache {
+
+    private static final int MAX_LECTURES = 0xFFFF;
+
+    private final AttendanceRepository attendanceRepository;
+
+    private final Map<String, Integer> rollIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> lectureIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRollId = new AtomicInteger(1);
+    private final AtomicInteger nextLectureId = new AtomicInteger(1);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private LocalDate day;
+    private LongHashSet marked = new LongHashSet();
+
+    @PostConstruct
+    public void warm() {
+        long t0 = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        int n = 0;
+        synchronized (this) {
+            day = today;
+            marked = new LongHashSet();
+            for (Attendance a : attendanceRepository.findByDate(today)) {
+                long key = key(a.getRollNo(), a.getLecture(), a.getSlot());
+                if (key != 0) {
+                    marked.add(key);
+                    n++;
+                }
+            }
+        }
+        System.out.printf("✅ Attendance dedupe cache: %d marks for %s in %d ms%n",
+                n, today, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /**
+     * Records a mark for the given date. Returns false when that key was already
+     * marked today (a repeat), true when it is new and should be persisted.
+     */
+    public synchronized boolean add(String rollNo, String lecture, Integer slot, LocalDate date) {
+        rollOver(date);
+        long key = key(rollNo, lecture, slot);
+        if (key == 0) {
+            misses.increment();
+            return true; // too many distinct lectures to intern: let the database decide
+        }
+        if (marked.add(key)) {
+            misses.increment();
+            return true;
+        }
+        hits.increment();
+        return false;
+    }
+
+    /** Undoes an add whose write failed, so the next recognition tries again. */
+    public synchronized void remove(String rollNo, String lecture, Integer slot) {
+        long key = key(rollNo, lecture, slot);
+        if (key != 0) marked = marked.without(k -> k == key);
+    }
+
+    /** Invalidation for clearStudentAttendance. */
+    public synchronized void removeStudent(String rollNo) {
+        Integer id = rollIds.get(rollNo);
+        if (id != null) marked = marked.without(k -> (int) (k >>> 32) == id);
+    }
+
+    /** Invalidation for clearAllAttendance. */
+    public synchronized void clear() {
+        marked = new LongHashSet();
+    }
+
+    private void rollOver(LocalDate date) {
+        if (!date.equals(day)) {
+            day = date;
+            marked = new LongHashSet();
+        }
+    }
+
+    /** Packed key, or 0 when the lecture cannot be interned. */
+    private long key(String rollNo, String lecture, Integer slot) {
+        int roll = rollIds.computeIfAbsent(rollNo, k -> nextRollId.getAndIncrement());
+        int lec = lectureIds.computeIfAbsent(lecture == null ? "" : lecture, k -> nextLectureId.getAndIncrement());
+        if (lec > MAX_LECTURES) return 0;
+        int s = slot == null ? 0 : (slot + 1) & 0xFFFF;
+        return ((long) roll << 32) | ((long) lec << 16) | s;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("day", String.valueOf(day));
+        stats.put("marked", marked.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("internedRollNos", rollIds.size());
+        stats.put("internedLectures", lectureIds.size());
+        return stats;
+    }
+
+    /* ---------------- Helper ---------------- */
+
+    /** Open-addressing set of non-zero longs (0 marks an empty slot). Not thread-safe. */
+    private static final class LongHashSet {
+        private long[] table = new long[64];
+        private int size;
+
+        boolean add(long key) {
+            if ((size + 1) * 4 > table.length * 3) grow();
+            int mask = table.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == key) return false;
+                if (table[i] == 0) {
+                    table[i] = key;
+                    size++;
+                    return true;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Copy without the keys matching the filter; removals are rare, so no tombstones. */
+        LongHashSet without(LongPredicate drop) {
+            LongHashSet out = new LongHashSet();
+            for (long k : table) if (k != 0 && !drop.test(k)) out.add(k);
+            return out;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+            for (long k : old) if (k != 0) add(k);
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
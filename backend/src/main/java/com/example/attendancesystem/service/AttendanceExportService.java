@@ -0,0 +1,143 @@
+package com.example.attendancesystem.service;
+
+import com.example.attendancesystem.dto.AttendanceQuery;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Attendance export as CSV or XLSX, written row by row while the JDBC cursor
+ * advances (see {@link AttendanceService#streamAttendance}). Nothing is collected
+ * first: CSV goes through a fixed buffer and XLSX through a POI SXSSF workbook
+ * that keeps only a window of rows in memory and spills the rest to a temp file.
+ */
+@Service
+@RequiredArgsConstructor
+public class AttendanceExportService {
+
+    private static final String[] HEADER = {"id", "name", "rollNo", "lecture", "slot", "date", "time"};
+    private static final int XLSX_MAX_ROWS = 1_048_576; // per sheet, header included
+
+    private final AttendanceService attendanceService;
+
+    // ✅ Rows SXSSF keeps in memory before flushing to its temp file
+    @Value("${attendance.export.xlsx-window:200}")
+    private int xlsxWindow;
+
+    /** Writes the query's rows as UTF-8 CSV (RFC 4180 quoting); returns the row count. */
+    public long writeCsv(AttendanceQuery query, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        w.write(String.join(",", HEADER));
+        w.write("\r\n");
+        long rows = attendanceService.streamAttendance(query, a -> {
+            try {
+                w.write(String.valueOf(a.getId()));
+                w.write(',');
+                csv(w, a.getName());
+                w.write(',');
+                csv(w, a.getRollNo());
+                w.write(',');
+                csv(w, a.getLecture());
+                w.write(',');
+                if (a.getSlot() != null) w.write(String.valueOf(a.getSlot()));
+                w.write(',');
+                if (a.getDate() != null) w.write(a.getDate().toString());
+                w.write(',');
+                if (a.getTime() != null) w.write(a.getTime().toString());
+                w.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // client went away: abort the cursor
+            }
+        });
+        w.flush();
+        return rows;
+    }
+
+    private static void csv(Writer w, String value) throws IOException {
+        if (value == null) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        // Leading =, +, -, @ would run as a formula when the file is opened in a spreadsheet
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) value = "'" + value;
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+
+    /** Writes the query's rows as an XLSX workbook, starting a new sheet when one is full. */
+    public long writeXlsx(AttendanceQuery query, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(Math.max(1, xlsxWindow));
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+
+            SheetCursor cursor = new SheetCursor(workbook);
+            long rows = attendanceService.streamAttendance(query, a -> {
+                Row row = cursor.nextRow();
+                row.createCell(0).setCellValue(a.getId());
+                if (a.getName() != null) row.createCell(1).setCellValue(a.getName());
+                if (a.getRollNo() != null) row.createCell(2).setCellValue(a.getRollNo());
+                if (a.getLecture() != null) row.createCell(3).setCellValue(a.getLecture());
+                if (a.getSlot() != null) row.createCell(4).setCellValue(a.getSlot());
+                if (a.getDate() != null) {
+                    row.createCell(5).setCellValue(a.getDate());
+                    row.getCell(5).setCellStyle(dateStyle);
+                }
+                if (a.getTime() != null) row.createCell(6).setCellValue(a.getTime().toString());
+            });
+            workbook.write(out);
+            out.flush();
+            return rows;
+        } finally {
+            workbook.dispose(); // temp files
+            workbook.close();
+        }
+    }
+
+    /* ---------------- Helper ---------------- */
+    /** Hands out rows, rolling over to "attendance (2)", "(3)", ... at the sheet row limit. */
+    private static final class SheetCursor {
+        private final SXSSFWorkbook workbook;
+        private SXSSFSheet sheet;
+        private int sheets;
+        private int next;
+
+        SheetCursor(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+            newSheet();
+        }
+
+        Row nextRow() {
+            if (next >= XLSX_MAX_ROWS) newSheet();
+            return sheet.createRow(next++);
+        }
+
+        private void newSheet() {
+            sheets++;
+            sheet = workbook.createSheet(sheets == 1 ? "attendance" : "attendance (" + sheets + ")");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < HEADER.length; i++) header.createCell(i).setCellValue(HEADER[i]);
+            next = 1;
+        }
+    }
+}
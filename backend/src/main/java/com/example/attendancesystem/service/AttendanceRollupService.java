@@ -0,0 +1,345 @@
+package com.example.attendancesystem.service;
+
+import com.example.attendancesystem.repository.LectureRepositary;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Attendance rollups: attendance_student_month (roll_no, year, month) and
+ * attendance_lecture_day (lecture, date).
+ *
+ * Every statement recomputes a rollup row from the raw rows it covers, through
+ * the (roll_no, date, id) and (lecture, date, id) indexes, and upserts it. The
+ * writer calls {@link #refresh} with each batch, so only the keys a batch touched
+ * are recomputed; the clears call their own hooks. Because a refresh is a
+ * recomputation rather than a +1, duplicates settled by ON CONFLICT and retried
+ * batches never make the counts drift, and refreshes may overlap a rebuild.
+ */
+@Service
+@RequiredArgsConstructor
+public class AttendanceRollupService {
+
+    private static final String UPSERT_STUDENT_MONTH =
+            "INSERT INTO attendance_student_month (roll_no, year, month, present_days, marks) "
+                    + "SELECT roll_no, ?, ?, COUNT(DISTINCT date), COUNT(*) FROM attendance "
+                    + "WHERE roll_no = ? AND date >= ? AND date < ? GROUP BY roll_no "
+                    + "ON CONFLICT (roll_no, year, month) DO UPDATE "
+                    + "SET present_days = EXCLUDED.present_days, marks = EXCLUDED.marks";
+    private static final String UPSERT_LECTURE_DAY =
+            "INSERT INTO attendance_lecture_day (lecture, date, present, marks) "
+                    + "SELECT lecture, date, COUNT(DISTINCT roll_no), COUNT(*) FROM attendance "
+                    + "WHERE lecture = ? AND date = ? GROUP BY lecture, date "
+                    + "ON CONFLICT (lecture, date) DO UPDATE "
+                    + "SET present = EXCLUDED.present, marks = EXCLUDED.marks";
+    private static final String DELETE_EMPTY_LECTURE_DAY =
+            "DELETE FROM attendance_lecture_day d WHERE lecture = ? AND date = ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM attendance a WHERE a.lecture = d.lecture AND a.date = d.date)";
+
+    // Whole-month variants for the rebuild
+    private static final String REBUILD_STUDENT_MONTH =
+            "INSERT INTO attendance_student_month (roll_no, year, month, present_days, marks) "
+                    + "SELECT roll_no, ?, ?, COUNT(DISTINCT date), COUNT(*) FROM attendance "
+                    + "WHERE date >= ? AND date < ? GROUP BY roll_no "
+                    + "ON CONFLICT (roll_no, year, month) DO UPDATE "
+                    + "SET present_days = EXCLUDED.present_days, marks = EXCLUDED.marks";
+    private static final String PRUNE_STUDENT_MONTH =
+            "DELETE FROM attendance_student_month s WHERE year = ? AND month = ? AND NOT EXISTS "
+                    + "(SELECT 1 FROM attendance a WHERE a.roll_no = s.roll_no AND a.date >= ? AND a.date < ?)";
+    private static final String REBUILD_LECTURE_DAY =
+            "INSERT INTO attendance_lecture_day (lecture, date, present, marks) "
+                    + "SELECT lecture, date, COUNT(DISTINCT roll_no), COUNT(*) FROM attendance "
+                    + "WHERE date >= ? AND date < ? AND lecture IS NOT NULL GROUP BY lecture, date "
+                    + "ON CONFLICT (lecture, date) DO UPDATE "
+                    + "SET present = EXCLUDED.present, marks = EXCLUDED.marks";
+    private static final String PRUNE_LECTURE_DAY =
+            "DELETE FROM attendance_lecture_day d WHERE date >= ? AND date < ? AND NOT EXISTS "
+                    + "(SELECT 1 FROM attendance a WHERE a.lecture = d.lecture AND a.date = d.date)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LectureRepositary lectureRepositary;
+
+    // ✅ Parallelism of the rebuild (one month per task)
+    @Value("${attendance.rollup.rebuild-threads:4}")
+    private int rebuildThreads;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /** First start with rollups: fill them from the raw table. */
+    @PostConstruct
+    public void init() {
+        Boolean empty = jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM attendance_student_month) "
+                        + "AND EXISTS (SELECT 1 FROM attendance)", Boolean.class);
+        if (Boolean.TRUE.equals(empty)) rebuild(null, null);
+    }
+
+    /* ---------------- INCREMENTAL ---------------- */
+
+    /**
+     * Recomputes the student-months and lecture-days touched by a written batch.
+     * Callers must not refresh the same keys concurrently: under READ COMMITTED
+     * the upsert that lands last wins even if its snapshot missed the other's
+     * rows. AttendanceWriter runs every refresh under its flush lock.
+     */
+    public void refresh(Collection<AttendanceWriter.Event> batch) {
+        Set<List<Object>> studentMonths = new LinkedHashSet<>();
+        Set<List<Object>> lectureDays = new LinkedHashSet<>();
+        for (AttendanceWriter.Event e : batch) {
+            studentMonths.add(List.of(e.rollNo, YearMonth.from(e.date)));
+            if (e.lecture != null) lectureDays.add(List.of(e.lecture, e.date));
+        }
+        refreshStudentMonths(studentMonths);
+        refreshLectureDays(lectureDays, false);
+    }
+
+    /** Lecture-days a student has marks on; read before the student's rows are deleted. */
+    public List<Object[]> lectureDaysOf(String rollNo) {
+        return jdbcTemplate.query(
+                "SELECT DISTINCT lecture, date FROM attendance WHERE roll_no = ? AND lecture IS NOT NULL",
+                (rs, i) -> new Object[]{rs.getString(1), rs.getDate(2).toLocalDate()}, rollNo);
+    }
+
+    /** After clearStudentAttendance: drop the student's months, recount the lecture-days they were in. */
+    public void onStudentCleared(String rollNo, List<Object[]> lectureDays) {
+        jdbcTemplate.update("DELETE FROM attendance_student_month WHERE roll_no = ?", rollNo);
+        Set<List<Object>> keys = new LinkedHashSet<>();
+        for (Object[] k : lectureDays) keys.add(List.of(k[0], k[1]));
+        refreshLectureDays(keys, true);
+    }
+
+    /** After clearAllAttendance. */
+    public void onAllCleared() {
+        jdbcTemplate.update("DELETE FROM attendance_student_month");
+        jdbcTemplate.update("DELETE FROM attendance_lecture_day");
+    }
+
+    private void refreshStudentMonths(Set<List<Object>> keys) {
+        if (keys.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPSERT_STUDENT_MONTH, new ArrayList<>(keys), keys.size(), (ps, k) -> {
+            YearMonth ym = (YearMonth) k.get(1);
+            ps.setInt(1, ym.getYear());
+            ps.setInt(2, ym.getMonthValue());
+            ps.setString(3, (String) k.get(0));
+            ps.setDate(4, Date.valueOf(ym.atDay(1)));
+            ps.setDate(5, Date.valueOf(ym.plusMonths(1).atDay(1)));
+        });
+    }
+
+    private void refreshLectureDays(Set<List<Object>> keys, boolean mayBeEmpty) {
+        if (keys.isEmpty()) return;
+        List<List<Object>> rows = new ArrayList<>(keys);
+        jdbcTemplate.batchUpdate(UPSERT_LECTURE_DAY, rows, rows.size(), (ps, k) -> {
+            ps.setString(1, (String) k.get(0));
+            ps.setDate(2, Date.valueOf((LocalDate) k.get(1)));
+        });
+        if (!mayBeEmpty) return;
+        jdbcTemplate.batchUpdate(DELETE_EMPTY_LECTURE_DAY, rows, rows.size(), (ps, k) -> {
+            ps.setString(1, (String) k.get(0));
+            ps.setDate(2, Date.valueOf((LocalDate) k.get(1)));
+        });
+    }
+
+    /* ---------------- REBUILD ---------------- */
+
+    /**
+     * Recomputes every rollup month between from and to (null = the whole table)
+     * from the raw rows, one month per task on rebuild-threads workers. Returns
+     * null when a rebuild is already running.
+     */
+    public Map<String, Object> rebuild(LocalDate from, LocalDate to) {
+        if (!rebuilding.compareAndSet(false, true)) return null;
+        long t0 = System.nanoTime();
+        ExecutorService pool = null;
+        try {
+            List<YearMonth> months = months(from, to);
+            pool = Executors.newFixedThreadPool(Math.max(1, Math.min(rebuildThreads, months.size())), r -> {
+                Thread t = new Thread(r, "attendance-rollup-rebuild");
+                t.setDaemon(true);
+                return t;
+            });
+
+            List<Future<int[]>> results = new ArrayList<>();
+            for (YearMonth ym : months) results.add(pool.submit(() -> rebuildMonth(ym)));
+
+            int studentMonths = 0, lectureDays = 0;
+            for (Future<int[]> f : results) {
+                int[] n = f.get();
+                studentMonths += n[0];
+                lectureDays += n[1];
+            }
+
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            System.out.printf("✅ Attendance rollups rebuilt: %d months, %d student-months, %d lecture-days in %d ms%n",
+                    months.size(), studentMonths, lectureDays, ms);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("months", months.size());
+            result.put("studentMonths", studentMonths);
+            result.put("lectureDays", lectureDays);
+            result.put("millis", ms);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rollup rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rollup rebuild failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            if (pool != null) pool.shutdownNow();
+            rebuilding.set(false);
+        }
+    }
+
+    private int[] rebuildMonth(YearMonth ym) {
+        Date start = Date.valueOf(ym.atDay(1));
+        Date end = Date.valueOf(ym.plusMonths(1).atDay(1));
+        int students = jdbcTemplate.update(REBUILD_STUDENT_MONTH, ym.getYear(), ym.getMonthValue(), start, end);
+        jdbcTemplate.update(PRUNE_STUDENT_MONTH, ym.getYear(), ym.getMonthValue(), start, end);
+        int days = jdbcTemplate.update(REBUILD_LECTURE_DAY, start, end);
+        jdbcTemplate.update(PRUNE_LECTURE_DAY, start, end);
+        return new int[]{students, days};
+    }
+
+    /** Months to rebuild: the requested range, or everything covered by raw rows or existing rollups. */
+    private List<YearMonth> months(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            Map<String, Object> span = jdbcTemplate.queryForMap(
+                    "SELECT LEAST((SELECT MIN(date) FROM attendance), (SELECT MIN(date) FROM attendance_lecture_day), "
+                            + "(SELECT MAKE_DATE(MIN(year), 1, 1) FROM attendance_student_month)) AS lo, "
+                            + "GREATEST((SELECT MAX(date) FROM attendance), (SELECT MAX(date) FROM attendance_lecture_day), "
+                            + "(SELECT MAKE_DATE(MAX(year), 12, 1) FROM attendance_student_month)) AS hi");
+            if (from == null) from = span.get("lo") == null ? null : ((Date) span.get("lo")).toLocalDate();
+            if (to == null) to = span.get("hi") == null ? null : ((Date) span.get("hi")).toLocalDate();
+        }
+        List<YearMonth> months = new ArrayList<>();
+        if (from == null || to == null) return months;
+        for (YearMonth ym = YearMonth.from(from); !ym.isAfter(YearMonth.from(to)); ym = ym.plusMonths(1)) {
+            months.add(ym);
+        }
+        return months;
+    }
+
+    /* ---------------- READ ---------------- */
+
+    /** Weekdays of the month up to today: the dashboard's working-day count. */
+    public static int workingDays(YearMonth ym, LocalDate today) {
+        int n = 0;
+        for (LocalDate d = ym.atDay(1); !d.isAfter(ym.atEndOfMonth()) && !d.isAfter(today); d = d.plusDays(1)) {
+            if (d.getDayOfWeek() != DayOfWeek.SATURDAY && d.getDayOfWeek() != DayOfWeek.SUNDAY) n++;
+        }
+        return n;
+    }
+
+    private static double percentage(long part, long whole) {
+        return whole <= 0 ? 0.0 : Math.round(part * 1000.0 / whole) / 10.0;
+    }
+
+    /** One student's month: present days, marks, working days and percentage. */
+    public Map<String, Object> studentMonth(String rollNo, int year, int month) {
+        YearMonth ym = YearMonth.of(year, month);
+        List<int[]> rows = jdbcTemplate.query(
+                "SELECT present_days, marks FROM attendance_student_month WHERE roll_no = ? AND year = ? AND month = ?",
+                (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2)}, rollNo, year, month);
+        int present = rows.isEmpty() ? 0 : rows.get(0)[0];
+        int marks = rows.isEmpty() ? 0 : rows.get(0)[1];
+        int working = workingDays(ym, LocalDate.now());
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("rollNo", rollNo);
+        r.put("year", year);
+        r.put("month", month);
+        r.put("presentDays", present);
+        r.put("absentDays", Math.max(0, working - present));
+        r.put("workingDays", working);
+        r.put("marks", marks);
+        r.put("percentage", percentage(present, working));
+        return r;
+    }
+
+    /** Every student's month (zeros for students with no marks) plus the class average. */
+    public Map<String, Object> classMonth(int year, int month) {
+        YearMonth ym = YearMonth.of(year, month);
+        int working = workingDays(ym, LocalDate.now());
+        List<Map<String, Object>> students = jdbcTemplate.query(
+                "SELECT s.roll_no, s.name, COALESCE(r.present_days, 0) AS present_days, COALESCE(r.marks, 0) AS marks "
+                        + "FROM student s LEFT JOIN attendance_student_month r "
+                        + "ON r.roll_no = s.roll_no AND r.year = ? AND r.month = ? ORDER BY s.roll_no",
+                (rs, i) -> {
+                    Map<String, Object> s = new LinkedHashMap<>();
+                    s.put("rollNo", rs.getString("roll_no"));
+                    s.put("name", rs.getString("name"));
+                    s.put("presentDays", rs.getInt("present_days"));
+                    s.put("marks", rs.getInt("marks"));
+                    s.put("percentage", percentage(rs.getInt("present_days"), working));
+                    return s;
+                }, year, month);
+
+        long present = 0;
+        for (Map<String, Object> s : students) present += (Integer) s.get("presentDays");
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("year", year);
+        r.put("month", month);
+        r.put("workingDays", working);
+        r.put("students", students);
+        r.put("averagePercentage", percentage(present, (long) working * students.size()));
+        return r;
+    }
+
+    /**
+     * A lecture's days between from and to. The percentage is students present
+     * over (enrolled x sessions), where enrolled is the lecture's roster size or,
+     * without a roster, every known student.
+     */
+    public Map<String, Object> lectureRange(String lecture, LocalDate from, LocalDate to) {
+        List<Map<String, Object>> days = jdbcTemplate.query(
+                "SELECT date, present, marks FROM attendance_lecture_day "
+                        + "WHERE lecture = ? AND date >= ? AND date <= ? ORDER BY date",
+                (rs, i) -> {
+                    Map<String, Object> d = new LinkedHashMap<>();
+                    d.put("date", rs.getDate("date").toLocalDate());
+                    d.put("present", rs.getInt("present"));
+                    d.put("marks", rs.getInt("marks"));
+                    return d;
+                }, lecture, Date.valueOf(from), Date.valueOf(to));
+
+        long enrolled = lectureRepositary.countByLecture(lecture);
+        boolean roster = enrolled > 0;
+        if (!roster) {
+            Long students = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM student", Long.class);
+            enrolled = students == null ? 0 : students;
+        }
+        long present = 0;
+        for (Map<String, Object> d : days) present += (Integer) d.get("present");
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("lecture", lecture);
+        r.put("from", from);
+        r.put("to", to);
+        r.put("sessions", days.size());
+        r.put("enrolled", enrolled);
+        r.put("enrolledFrom", roster ? "roster" : "students");
+        r.put("present", present);
+        r.put("percentage", percentage(present, enrolled * days.size()));
+        r.put("days", days);
+        return r;
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.attendancesystem.service;
 
-import com.example.attendancesystem.dto.StudentProjection;
+import com.example.attendancesystem.dto.AttendancePage;
+import com.example.attendancesystem.dto.AttendanceQuery;
 import com.example.attendancesystem.model.Attendance;
+import com.example.attendancesystem.model.Student;
+import com.example.attendancesystem.repository.AttendanceQueryRepository;
 import com.example.attendancesystem.repository.AttendanceRepository;
+import com.example.attendancesystem.repository.StudentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -10,40 +14,82 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class AttendanceService {
 
     private final AttendanceRepository attendanceRepository;
+    private final AttendanceQueryRepository attendanceQueryRepository;
+    private final StudentRepository studentRepository;
+    private final AttendanceWriter attendanceWriter;
+    private final AttendanceDedupeCache dedupeCache;
+    private final AttendanceRollupService rollups;
+    private final RecognitionMetrics metrics;
 
-    /** ✅ Mark attendance (prevents duplicates) */
+    /**
+     * ✅ Mark attendance. Repeats within the day are answered from the in-memory
+     * dedupe cache; new marks go to the write-behind writer and are inserted with
+     * ON CONFLICT DO NOTHING. Timed as attendance.mark{outcome=duplicate|queued|written|error}.
+     */
     public String markAttendance(String name, String rollNo, String lecture, Integer slot) {
+        long t0 = System.nanoTime();
         LocalDate today = LocalDate.now();
-
-        boolean exists = attendanceRepository.existsByRollNoAndDateAndLectureAndSlot(
-                rollNo, today, lecture, slot
-        );
-
-        if (exists) {
+        if (!dedupeCache.add(rollNo, lecture, slot, today)) {
+            metrics.attendanceMark("duplicate", t0);
             return "⚠️ Attendance already marked for " + rollNo + " (" + lecture + ")";
         }
 
-        Attendance attendance = new Attendance();
-        attendance.setName(name);
-        attendance.setRollNo(rollNo);
-        attendance.setLecture(lecture);
-        attendance.setSlot(slot);
-        attendance.setDate(today);
+        boolean queued;
+        try {
+            queued = attendanceWriter.submit(new AttendanceWriter.Event(name, rollNo, lecture, slot, today, LocalTime.now()));
+        } catch (RuntimeException e) {
+            dedupeCache.remove(rollNo, lecture, slot); // not persisted: let the next recognition retry
+            metrics.attendanceMark("error", t0);
+            throw e;
+        }
+        metrics.attendanceMark(queued ? "queued" : "written", t0);
+        return "✅ Attendance marked for " + name + " (" + rollNo + ")";
+    }
+
+    /** ✅ Write-behind queue depth and flush latency */
+    public Map<String, Object> getWriterStats() {
+        return attendanceWriter.stats();
+    }
 
-        attendance.setTime(LocalTime.now()); // ✅ fixes null-time issue
-        attendanceRepository.save(attendance);
+    /** ✅ Dedupe cache size and hit rate */
+    public Map<String, Object> getDedupeStats() {
+        return dedupeCache.stats();
+    }
 
-        return "✅ Attendance marked for " + name + " (" + rollNo + ")";
+    /* ---------------- ROLLUPS (flush first so a mark is counted as soon as it is accepted) ---------------- */
+
+    public Map<String, Object> getStudentRollup(String rollNo, int year, int month) {
+        attendanceWriter.flush();
+        return rollups.studentMonth(rollNo, year, month);
+    }
+
+    public Map<String, Object> getClassRollup(int year, int month) {
+        attendanceWriter.flush();
+        return rollups.classMonth(year, month);
+    }
+
+    public Map<String, Object> getLectureRollup(String lecture, LocalDate from, LocalDate to) {
+        attendanceWriter.flush();
+        return rollups.lectureRange(lecture, from, to);
+    }
+
+    /** Null when a rebuild is already running. */
+    public Map<String, Object> rebuildRollups(LocalDate from, LocalDate to) {
+        attendanceWriter.flush();
+        return rollups.rebuild(from, to);
     }
 
     /** ✅ Fetch attendance by rollNo + month/year */
     public List<Attendance> getStudentAttendance(String rollNo, int year, int month) {
+        attendanceWriter.flush();
         LocalDate start = LocalDate.of(year, month, 1);
         LocalDate end = start.withDayOfMonth(start.lengthOfMonth());
         return attendanceRepository.findByRollNoAndDateBetween(rollNo, start, end);
@@ -52,24 +98,50 @@ public class AttendanceService {
     /** ✅ Clear attendance for single student */
     @Transactional
     public String clearStudentAttendance(String rollNo) {
+        attendanceWriter.flush(); // queued marks must not reappear after the delete
+        List<Object[]> lectureDays = rollups.lectureDaysOf(rollNo);
         attendanceRepository.deleteByRollNo(rollNo);
+        attendanceRepository.flush(); // the rollup recount below reads through JDBC
+        rollups.onStudentCleared(rollNo, lectureDays);
+        dedupeCache.removeStudent(rollNo);
         return "🗑️ Attendance cleared for rollNo " + rollNo;
     }
 
     /** ✅ Clear attendance for all students */
     @Transactional
     public String clearAllAttendance() {
+        attendanceWriter.flush();
         attendanceRepository.deleteAll();
+        rollups.onAllCleared();
+        dedupeCache.clear();
         return "🗑️ Cleared attendance for all students";
     }
 
-    /** ✅ Get distinct students (for sidebar list) */
-    public List<StudentProjection> getAllStudents() {
-        return attendanceRepository.findDistinctStudents();
+    /** ✅ Students (for sidebar list), from the student table rather than a scan of attendance */
+    public List<Student> getAllStudents() {
+        attendanceWriter.flush(); // the writer adds first-time students alongside their mark
+        return studentRepository.findAllByOrderByRollNoAsc();
     }
-    /** ✅ Fetch all attendance */
-    public List<Attendance> getAllAttendance() {
-        return attendanceRepository.findAll();
+
+    /** ✅ One page of attendance, newest first, continuing after the query's cursor */
+    public AttendancePage getAttendancePage(AttendanceQuery query) {
+        attendanceWriter.flush();
+        List<Attendance> rows = attendanceQueryRepository.findPage(query);
+        if (rows.size() <= query.getLimit()) return new AttendancePage(rows, null);
+
+        rows = rows.subList(0, query.getLimit());
+        Attendance last = rows.get(rows.size() - 1);
+        return new AttendancePage(rows, AttendanceQuery.cursorOf(last.getDate(), last.getId()));
+    }
+
+    /**
+     * ✅ Every matching row, newest first, handed to the sink as it is read. Runs in a
+     * read-only transaction so the driver can use a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    public long streamAttendance(AttendanceQuery query, Consumer<Attendance> sink) {
+        attendanceWriter.flush();
+        return attendanceQueryRepository.stream(query, sink);
     }
 
 }
@@ -0,0 +1,376 @@
+package com.example.attendancesystem.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind attendance persistence.
+ *
+ * Marks are queued and a single writer thread flushes them as JDBC batches of
+ * INSERT ... ON CONFLICT DO NOTHING, so duplicates are settled by a unique
+ * index on (roll_no, date, lecture, slot), NULLS NOT DISTINCT so a mark without
+ * a slot is still a duplicate, instead of a check-then-save race.
+ *
+ * When the queue stays full for offer-timeout-ms the caller writes its own row
+ * synchronously: producers slow down, nothing is dropped. Every write, the
+ * caller's included, runs under one lock: a rollup refresh upserts the counts of
+ * its own snapshot, so two overlapping refreshes of a key could leave it one short.
+ * A caller that cannot get the lock within sync-wait-ms (the writer is retrying
+ * a failing batch) fails instead of blocking. On shutdown the queue
+ * is drained before the context closes. Events queued at the moment of a hard
+ * crash are lost; the scanner simply marks those students again on the next pass.
+ */
+@Component
+@RequiredArgsConstructor
+public class AttendanceWriter implements MeterBinder {
+
+    private static final String UPSERT =
+            "INSERT INTO attendance (name, roll_no, lecture, slot, date, time) VALUES (?, ?, ?, ?, ?, ?) "
+                    + "ON CONFLICT DO NOTHING";
+    // Keeps the student table (the /students list) in step with everyone who has a mark
+    private static final String UPSERT_STUDENT =
+            "INSERT INTO student (roll_no, name) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String BACKFILL_STUDENTS =
+            "INSERT INTO student (roll_no, name) SELECT roll_no, MAX(name) FROM attendance GROUP BY roll_no "
+                    + "ON CONFLICT DO NOTHING";
+    // The entity's unique constraint treats NULL slots (and lectures) as distinct; this one does not
+    private static final String MARK_INDEX = "attendance_mark_unique";
+    private static final String DEDUPE_NULL_KEYS =
+            "DELETE FROM attendance a USING attendance b WHERE (a.slot IS NULL OR a.lecture IS NULL) "
+                    + "AND a.roll_no = b.roll_no AND a.date = b.date AND a.lecture IS NOT DISTINCT FROM b.lecture "
+                    + "AND a.slot IS NOT DISTINCT FROM b.slot AND a.id > b.id";
+    private static final String CREATE_MARK_INDEX =
+            "CREATE UNIQUE INDEX IF NOT EXISTS " + MARK_INDEX
+                    + " ON attendance (roll_no, date, lecture, slot) NULLS NOT DISTINCT";
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AttendanceRollupService rollups;
+
+    @Value("${attendance.write-behind.enabled:true}")
+    private boolean enabled;
+    @Value("${attendance.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${attendance.write-behind.batch-size:500}")
+    private int batchSize;
+    @Value("${attendance.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    @Value("${attendance.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+    @Value("${attendance.write-behind.sync-wait-ms:5000}")
+    private long syncWaitMs;
+
+    private BlockingQueue<Event> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final List<Event> unwritten = new ArrayList<>(); // guarded by flushLock
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder unconfirmed = new LongAdder();
+    private final LongAdder synchronousWrites = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    /** One attendance mark, stamped when it was accepted. */
+    public static final class Event {
+        final String name;
+        final String rollNo;
+        final String lecture;
+        final Integer slot;
+        final LocalDate date;
+        final LocalTime time;
+
+        public Event(String name, String rollNo, String lecture, Integer slot, LocalDate date, LocalTime time) {
+            this.name = name;
+            this.rollNo = rollNo;
+            this.lecture = lecture;
+            this.slot = slot;
+            this.date = date;
+            this.time = time;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        int backfilled = jdbcTemplate.update(BACKFILL_STUDENTS); // rows marked before the student table was kept
+        if (backfilled > 0) System.out.println("✅ Student table backfilled with " + backfilled + " roll number(s)");
+        ensureMarkIndex();
+
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (!enabled) return;
+        running = true;
+        writer = new Thread(this::writeLoop, "attendance-writer");
+        writer.setDaemon(true);
+        writer.start();
+        System.out.println("✅ Attendance write-behind: queue " + queueCapacity + ", batches of " + batchSize);
+    }
+
+    /**
+     * ON CONFLICT DO NOTHING only sees a conflict on a unique index, and Postgres
+     * treats NULLs in (roll_no, date, lecture, slot) as distinct, so a mark without
+     * a slot would insert again. Creates a NULLS NOT DISTINCT index once, after
+     * removing duplicate null-slot rows left from before it existed.
+     */
+    private void ensureMarkIndex() {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = ?)", Boolean.class, MARK_INDEX);
+        if (Boolean.TRUE.equals(exists)) return;
+        // Blocks writers from other instances between the dedupe and the index build
+        Integer removed = jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            con.setAutoCommit(false);
+            try (Statement st = con.createStatement()) {
+                st.execute("LOCK TABLE attendance IN SHARE ROW EXCLUSIVE MODE");
+                int n = st.executeUpdate(DEDUPE_NULL_KEYS);
+                st.execute(CREATE_MARK_INDEX);
+                con.commit();
+                return n;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        });
+        System.out.println("✅ Attendance index " + MARK_INDEX + " created");
+        if (removed != null && removed > 0) {
+            System.out.println("⚠️ Removed " + removed + " duplicate attendance row(s) without a slot or lecture");
+            rollups.rebuild(null, null); // their marks were counted
+        }
+    }
+
+    /**
+     * Accepts a mark. Returns true when it was queued, false when it was written
+     * synchronously (write-behind disabled, shutting down, or queue full).
+     */
+    public boolean submit(Event e) {
+        accepted.increment();
+        if (running) {
+            try {
+                if (queue.offer(e, offerTimeoutMs, TimeUnit.MILLISECONDS)) return true;
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronousWrites.increment();
+        // Same lock as the writer thread, so this row's rollup refresh never overlaps a batch's
+        try {
+            if (!flushLock.tryLock(syncWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Attendance writer busy for " + syncWaitMs + " ms");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the attendance writer");
+        }
+        try {
+            write(List.of(e));
+        } finally {
+            flushLock.unlock();
+        }
+        return false;
+    }
+
+    /** Writes everything queued so far before returning (e.g. before a delete). */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Event> batch = new ArrayList<>();
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running) {
+            Event first;
+            try {
+                first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (first == null) continue;
+
+            flushLock.lock();
+            try {
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                // Keeps retrying while running; a batch still failing at shutdown is handed over
+                if (!tryWrite(batch, Integer.MAX_VALUE)) unwritten.addAll(batch);
+            } finally {
+                batch.clear();
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /** Writes a batch, retrying with backoff up to maxAttempts times or until shutdown starts. */
+    private boolean tryWrite(List<Event> batch, int maxAttempts) {
+        long backoff = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                return true;
+            } catch (RuntimeException e) {
+                failures.increment();
+                System.out.println("⚠️ Attendance batch of " + batch.size() + " failed (attempt " + attempt + "): "
+                        + e.getMessage());
+                if (attempt >= maxAttempts || (maxAttempts == Integer.MAX_VALUE && !running)) return false;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoff = Math.min(backoff * 2, 5_000);
+            }
+        }
+    }
+
+    private void write(List<Event> batch) {
+        long t0 = System.nanoTime();
+        int[][] counts = jdbcTemplate.batchUpdate(UPSERT, batch, batch.size(), (ps, e) -> {
+            ps.setString(1, e.name);
+            ps.setString(2, e.rollNo);
+            ps.setString(3, e.lecture);
+            if (e.slot == null) ps.setNull(4, java.sql.Types.INTEGER);
+            else ps.setInt(4, e.slot);
+            ps.setDate(5, Date.valueOf(e.date));
+            ps.setTime(6, Time.valueOf(e.time));
+        });
+        Map<String, String> students = new LinkedHashMap<>();
+        for (Event e : batch) students.putIfAbsent(e.rollNo, e.name);
+        jdbcTemplate.batchUpdate(UPSERT_STUDENT, new ArrayList<>(students.entrySet()), students.size(), (ps, s) -> {
+            ps.setString(1, s.getKey());
+            ps.setString(2, s.getValue());
+        });
+        rollups.refresh(batch); // recounts only the student-months and lecture-days this batch touched
+        long nanos = System.nanoTime() - t0;
+
+        for (int[] chunk : counts) {
+            for (int c : chunk) {
+                if (c > 0) inserted.add(c);
+                else if (c == 0) duplicates.increment();
+                else if (c == Statement.SUCCESS_NO_INFO) unconfirmed.increment();
+            }
+        }
+        batches.increment();
+        flushNanos.add(nanos);
+        lastFlushNanos = nanos;
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false; // late submits now write synchronously
+        if (writer != null) {
+            try {
+                writer.join(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushLock.lock();
+        try {
+            List<Event> pending = new ArrayList<>(unwritten);
+            unwritten.clear();
+            queue.drainTo(pending);
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<Event> batch = pending.subList(from, Math.min(pending.size(), from + batchSize));
+                if (tryWrite(batch, SHUTDOWN_ATTEMPTS)) continue;
+                for (Event ev : batch)
+                    System.out.println("⚠️ Dropped attendance " + ev.rollNo + " " + ev.lecture + " " + ev.date);
+            }
+            System.out.println("✅ Attendance writer drained " + pending.size() + " pending mark(s) on shutdown");
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** The same figures for /actuator/prometheus (Spring Boot binds every MeterBinder bean). */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("attendance.writer.queue.depth", this, w -> w.queue == null ? 0 : w.queue.size())
+                .description("Marks waiting for the write-behind writer")
+                .register(registry);
+        // duplicate = skipped by ON CONFLICT DO NOTHING, unconfirmed = batched insert without a row count
+        rows(registry, "inserted", inserted);
+        rows(registry, "duplicate", duplicates);
+        rows(registry, "unconfirmed", unconfirmed);
+        FunctionCounter.builder("attendance.writer.synchronous", synchronousWrites, LongAdder::sum)
+                .description("Marks written by the caller because the queue stayed full")
+                .register(registry);
+        FunctionCounter.builder("attendance.writer.failed.batches", failures, LongAdder::sum)
+                .description("Batches that failed to insert")
+                .register(registry);
+        FunctionTimer.builder("attendance.writer.flush", this, w -> w.batches.sum(), w -> w.flushNanos.sum(),
+                        TimeUnit.NANOSECONDS)
+                .description("JDBC batch flushes")
+                .register(registry);
+    }
+
+    private static void rows(MeterRegistry registry, String result, LongAdder value) {
+        FunctionCounter.builder("attendance.writer.rows", value, LongAdder::sum)
+                .tag("result", result)
+                .description("Attendance rows by write result")
+                .register(registry);
+    }
+
+    /** Queue depth, outcomes and flush latency. */
+    public Map<String, Object> stats() {
+        long b = batches.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", accepted.sum());
+        stats.put("inserted", inserted.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("unconfirmed", unconfirmed.sum());
+        stats.put("synchronousWrites", synchronousWrites.sum());
+        stats.put("failedBatches", failures.sum());
+        stats.put("batches", b);
+        stats.put("meanFlushMillis", b == 0 ? 0.0 : flushNanos.sum() / (double) b / 1_000_000);
+        stats.put("lastFlushMillis", lastFlushNanos / 1_000_000.0);
+        stats.put("maxFlushMillis", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,507 @@
+package com.example.attendancesystem.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Bulk enrollment from a zip archive or a server-side directory of photos named
+ * rollNo_name_*.jpg (the GalleryBuilder layout; any number of samples per student).
+ *
+ * A job runs as a two-stage pipeline: detection workers decode each photo and
+ * crop its face onto a bounded queue, and embedding threads drain that queue in
+ * ArcFace batches, adding each vector to its student's running sum. No crop
+ * outlives its batch, so memory is bounded by the queue, not by the intake. When
+ * every file is done the averaged embeddings are written to the gallery in one go.
+ * Each detection and each batch takes an ENROLLMENT slot from
+ * {@link InferenceAdmission}, so a large intake waits behind live recognition.
+ *
+ * Jobs run one at a time; their progress and per-file failures are kept for the
+ * last few jobs.
+ */
+@Service
+@RequiredArgsConstructor
+public class BulkEnrollmentService {
+
+    private static final int MAX_FAILURES_REPORTED = 1000;
+    private static final int JOBS_KEPT = 20;
+
+    private final FaceRecognitionService faceService;
+    private final ImageDecoder imageDecoder;
+    private final InferenceAdmission admission;
+
+    // ✅ Detection workers (0 = one per core), embedding threads and ArcFace batch size
+    @Value("${face.enrollment.workers:0}")
+    private int workers;
+    @Value("${face.enrollment.embed-threads:2}")
+    private int embedThreads;
+    @Value("${face.enrollment.batch-size:16}")
+    private int batchSize;
+    @Value("${face.enrollment.max-image-bytes:10485760}")
+    private long maxImageBytes;
+    // ✅ Upload limits: archive size on disk and entries/files per job
+    @Value("${face.enrollment.max-archive-bytes:536870912}")
+    private long maxArchiveBytes;
+    @Value("${face.enrollment.max-files:20000}")
+    private int maxFiles;
+    // ✅ Server directories may only be read below this root (empty = directory jobs disabled)
+    @Value("${face.enrollment.directory-root:}")
+    private String directoryRoot;
+
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bulk-enrollment");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > JOBS_KEPT && eldest.getValue().finished();
+        }
+    });
+
+    /* ---------------- JOBS ---------------- */
+
+    /** The archive is over face.enrollment.max-archive-bytes; the controller answers 413. */
+    public static class ArchiveTooLargeException extends IOException {
+        public ArchiveTooLargeException(long max) {
+            super("Archive larger than " + max + " bytes");
+        }
+    }
+
+    /**
+     * Queues a job over an uploaded zip of the given length (-1 when unknown). The
+     * stream is spooled to a temp file first, stopping at face.enrollment.max-archive-bytes.
+     */
+    public Map<String, Object> submitZip(InputStream archive, long length, String fileName) throws IOException {
+        if (length > maxArchiveBytes) throw new ArchiveTooLargeException(maxArchiveBytes);
+        Path tmp = Files.createTempFile("enrollment-", ".zip");
+        try {
+            copyBounded(archive, tmp);
+            ZipSource source = new ZipSource(tmp);
+            if (source.zip.size() > maxFiles) {
+                source.close();
+                throw new IllegalArgumentException("Archive has more than " + maxFiles + " entries");
+            }
+            return submit(source, fileName == null ? "upload.zip" : fileName);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /** Content-Length can be absent or wrong, so the copy itself stops at the limit. */
+    private void copyBounded(InputStream in, Path target) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            for (int n; (n = in.read(buf)) >= 0; ) {
+                total += n;
+                if (total > maxArchiveBytes) throw new ArchiveTooLargeException(maxArchiveBytes);
+                out.write(buf, 0, n);
+            }
+        }
+    }
+
+    /** Queues a job over a directory below face.enrollment.directory-root. */
+    public Map<String, Object> submitDirectory(String directory) throws IOException {
+        if (directoryRoot == null || directoryRoot.isBlank())
+            throw new IllegalArgumentException("Directory enrollment is disabled (face.enrollment.directory-root is not set)");
+        Path root = Paths.get(directoryRoot).toRealPath();
+        Path dir = root.resolve(directory).normalize();
+        if (!Files.isDirectory(dir) || !dir.toRealPath().startsWith(root))
+            throw new IllegalArgumentException("Not a directory below the enrollment root: " + directory);
+        return submit(new DirectorySource(dir.toRealPath()), dir.toString());
+    }
+
+    private Map<String, Object> submit(Source source, String label) {
+        Job job = new Job(UUID.randomUUID().toString(), label);
+        jobs.put(job.id, job);
+        jobRunner.submit(() -> {
+            try (source) {
+                run(job, source);
+            } catch (Exception e) {
+                e.printStackTrace();
+                job.fail(e.getMessage());
+            }
+        });
+        return job.status();
+    }
+
+    public Map<String, Object> status(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.status();
+    }
+
+    public List<Map<String, Object>> statuses() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        synchronized (jobs) {
+            for (Job job : jobs.values()) out.add(job.status());
+        }
+        return out;
+    }
+
+    /* ---------------- PIPELINE ---------------- */
+
+    private void run(Job job, Source source) throws Exception {
+        job.start();
+        List<String> files = new ArrayList<>();
+        List<String> entries = source.names(maxFiles + 1);
+        if (entries.size() > maxFiles) throw new IllegalArgumentException("More than " + maxFiles + " files");
+        for (String name : entries) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png")) files.add(name);
+        }
+        job.total = files.size();
+
+        Map<String, String> names = new ConcurrentHashMap<>();
+        Map<String, float[]> sums = new HashMap<>(); // owned by the embedding threads, guarded by itself
+        BlockingQueue<Crop> crops = new ArrayBlockingQueue<>(Math.max(1, batchSize) * 4);
+
+        int detectors = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        ExecutorService detect = Executors.newFixedThreadPool(detectors, named("enroll-detect"));
+        ExecutorService embed = Executors.newFixedThreadPool(Math.max(1, embedThreads), named("enroll-embed"));
+        AtomicInteger detectorsLeft = new AtomicInteger(files.size());
+
+        try {
+            for (int i = 0; i < Math.max(1, embedThreads); i++) {
+                embed.submit(() -> embedLoop(job, crops, detectorsLeft, sums));
+            }
+            for (String file : files) {
+                detect.submit(() -> {
+                    try {
+                        detectOne(job, source, file, names, crops);
+                    } finally {
+                        detectorsLeft.decrementAndGet();
+                    }
+                });
+            }
+            detect.shutdown();
+            detect.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            embed.shutdown();
+            embed.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            detect.shutdownNow();
+            embed.shutdownNow();
+        }
+
+        // ✅ One gallery write for the whole intake
+        Map<String, float[]> averaged = new HashMap<>();
+        synchronized (sums) {
+            for (Map.Entry<String, float[]> e : sums.entrySet()) averaged.put(e.getKey(), normalize(e.getValue()));
+        }
+        faceService.enrollAll(averaged, names);
+        job.finish(averaged.size());
+        System.out.printf("✅ Bulk enrollment %s: %d students from %d files (%d failed) in %d ms%n",
+                job.id, averaged.size(), job.total, job.failed.get(), job.elapsedMillis());
+    }
+
+    /** Decode + detect one photo; on success its crop goes onto the queue for the embedding stage. */
+    private void detectOne(Job job, Source source, String file, Map<String, String> names, BlockingQueue<Crop> crops) {
+        String base = file.substring(file.lastIndexOf('/') + 1);
+        String[] parts = base.split("\\.")[0].split("_", 3);
+        if (parts.length < 2 || parts[0].isBlank() || parts[1].isBlank()) {
+            job.fileFailed(file, "Bad filename format (expected rollNo_name_*.jpg)");
+            return;
+        }
+        try (PointerScope scope = NativeMemory.scope()) {
+            byte[] bytes = source.read(file, maxImageBytes);
+            if (bytes == null) {
+                job.fileFailed(file, "Larger than " + maxImageBytes + " bytes");
+                return;
+            }
+            Mat img = imageDecoder.decode(ByteBuffer.wrap(bytes));
+            if (img == null) {
+                job.fileFailed(file, "Not a decodable image");
+                return;
+            }
+            Mat face;
+            // Waits behind live recognition instead of competing with it for the detectors
+            try (InferenceAdmission.Permit permit = admission.acquireBlocking(InferenceAdmission.Priority.ENROLLMENT)) {
+                face = faceService.detectEnrollmentFace(img);
+            }
+            img.close();
+            if (face == null) {
+                job.fileFailed(file, "No face detected");
+                return;
+            }
+            // The crop outlives this scope: the embedding stage closes it
+            NativeMemory.keep(face);
+            names.putIfAbsent(parts[0], parts[1]);
+            try {
+                crops.put(new Crop(file, parts[0], face));
+            } catch (InterruptedException e) {
+                face.close();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fileFailed(file, "Interrupted");
+        } catch (Exception e) {
+            job.fileFailed(file, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /** Drains crops in batches until every detection task has finished and the queue is empty. */
+    private void embedLoop(Job job, BlockingQueue<Crop> crops, AtomicInteger detectorsLeft,
+                           Map<String, float[]> sums) {
+        List<Crop> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                Crop first = crops.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (detectorsLeft.get() == 0 && crops.isEmpty()) return;
+                    continue;
+                }
+                batch.add(first);
+                crops.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            List<Mat> faces = new ArrayList<>(batch.size());
+            for (Crop c : batch) faces.add(c.face);
+            try {
+                float[][] embs;
+                try (InferenceAdmission.Permit permit = admission.acquireBlocking(InferenceAdmission.Priority.ENROLLMENT)) {
+                    embs = faceService.embedFaces(faces);
+                }
+                synchronized (sums) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        float[] sum = sums.computeIfAbsent(batch.get(i).rollNo, k -> new float[embs[0].length]);
+                        for (int d = 0; d < sum.length; d++) sum[d] += embs[i][d];
+                    }
+                }
+                job.embedded.addAndGet(batch.size());
+                job.processed.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Crop c : batch) job.fileFailed(c.file, "Interrupted");
+            } catch (Exception e) {
+                for (Crop c : batch) job.fileFailed(c.file, "Embedding failed: " + e.getMessage());
+            } finally {
+                for (Mat f : faces) f.close();
+                batch.clear();
+            }
+        }
+    }
+
+    private static float[] normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < v.length; i++) v[i] /= (float) (norm + 1e-6);
+        return v;
+    }
+
+    private static ThreadFactory named(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobRunner.shutdownNow();
+    }
+
+    /* ---------------- Helper ---------------- */
+    private static final class Crop {
+        final String file;
+        final String rollNo;
+        final Mat face;
+
+        Crop(String file, String rollNo, Mat face) {
+            this.file = file;
+            this.rollNo = rollNo;
+            this.face = face;
+        }
+    }
+
+    /** Progress of one job; counters are updated by the pipeline threads. */
+    private static final class Job {
+        final String id;
+        final String source;
+        final Instant submitted = Instant.now();
+        volatile String state = "queued";
+        volatile String error;
+        volatile int total;
+        volatile int students;
+        volatile long startNanos;
+        volatile long endNanos;
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger embedded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final List<Map<String, String>> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Job(String id, String source) {
+            this.id = id;
+            this.source = source;
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            state = "running";
+        }
+
+        void fileFailed(String file, String reason) {
+            failed.incrementAndGet();
+            processed.incrementAndGet();
+            if (failures.size() < MAX_FAILURES_REPORTED) failures.add(Map.of("file", file, "reason", reason));
+        }
+
+        void finish(int students) {
+            this.students = students;
+            endNanos = System.nanoTime();
+            state = "done";
+        }
+
+        void fail(String message) {
+            error = message;
+            endNanos = System.nanoTime();
+            state = "failed";
+        }
+
+        boolean finished() {
+            return "done".equals(state) || "failed".equals(state);
+        }
+
+        long elapsedMillis() {
+            if (startNanos == 0) return 0;
+            return ((endNanos == 0 ? System.nanoTime() : endNanos) - startNanos) / 1_000_000;
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("id", id);
+            s.put("source", source);
+            s.put("state", state);
+            s.put("submitted", submitted.toString());
+            s.put("totalFiles", total);
+            s.put("processedFiles", processed.get());
+            s.put("progress", total == 0 ? (finished() ? 100.0 : 0.0) : Math.round(processed.get() * 1000.0 / total) / 10.0);
+            s.put("facesEmbedded", embedded.get());
+            s.put("failedFiles", failed.get());
+            s.put("studentsEnrolled", students);
+            s.put("elapsedMillis", elapsedMillis());
+            if (error != null) s.put("error", error);
+            synchronized (failures) {
+                s.put("failures", new ArrayList<>(failures));
+            }
+            return s;
+        }
+    }
+
+    /** Photos to enroll: file names and bounded reads. Thread-safe for concurrent reads. */
+    private interface Source extends Closeable {
+        /** Up to limit file names. */
+        List<String> names(int limit) throws IOException;
+
+        /** The file's bytes, or null when it is larger than maxBytes. */
+        byte[] read(String name, long maxBytes) throws IOException;
+    }
+
+    private static byte[] readBounded(InputStream in, long maxBytes) throws IOException {
+        byte[] bytes = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes + 1));
+        return bytes.length > maxBytes ? null : bytes;
+    }
+
+    private static final class ZipSource implements Source {
+        private final Path file;
+        private final ZipFile zip;
+
+        ZipSource(Path file) throws IOException {
+            this.file = file;
+            this.zip = new ZipFile(file.toFile());
+        }
+
+        @Override
+        public List<String> names(int limit) {
+            List<String> names = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements() && names.size() < limit; ) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory() && !entry.getName().startsWith("__MACOSX/")) names.add(entry.getName());
+            }
+            return names;
+        }
+
+        @Override
+        public byte[] read(String name, long maxBytes) throws IOException {
+            ZipEntry entry = zip.getEntry(name);
+            try (InputStream in = zip.getInputStream(entry)) {
+                return readBounded(in, maxBytes); // bounded by what is inflated, not the declared size
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static final class DirectorySource implements Source {
+        private final Path dir;
+
+        DirectorySource(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public List<String> names(int limit) throws IOException {
+            List<String> names = new ArrayList<>();
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(Files::isRegularFile).limit(limit).forEach(p -> names.add(p.getFileName().toString()));
+            }
+            return names;
+        }
+
+        @Override
+        public byte[] read(String name, long maxBytes) throws IOException {
+            try (InputStream in = Files.newInputStream(dir.resolve(name))) {
+                return readBounded(in, maxBytes);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -4,14 +4,23 @@ public class DetectedFace {
     private int x, y, width, height;
     private String name;
     private String rollNo;
+    private double accuracy;
+    private String status; // "success", "warning", "unknown"
 
     public DetectedFace(int x, int y, int width, int height, String name, String rollNo) {
+        this(x, y, width, height, name, rollNo, 0.0, null);
+    }
+
+    public DetectedFace(int x, int y, int width, int height, String name, String rollNo,
+                        double accuracy, String status) {
         this.x = x;
         this.y = y;
         this.width = width;
         this.height = height;
         this.name = name;
         this.rollNo = rollNo;
+        this.accuracy = accuracy;
+        this.status = status;
     }
 
     public int getX() { return x; }
@@ -20,4 +29,6 @@ public class DetectedFace {
     public int getHeight() { return height; }
     public String getName() { return name; }
     public String getRollNo() { return rollNo; }
+    public double getAccuracy() { return accuracy; }
+    public String getStatus() { return status; }
 }
@@ -0,0 +1,279 @@
+package com.example.attendancesystem.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registered face embeddings stored as one contiguous, row-major float[] of
+ * L2-normalized vectors with a parallel roll-number column.
+ *
+ * Readers grab the current immutable {@link Snapshot} and never block. Writers
+ * serialize on a lock: appends fill spare capacity past the published size
+ * and then publish a new snapshot, replace/remove copy the arrays first so a
+ * reader can never see a half-written row. Bulk writes go through
+ * {@link #putAll}, which copies once per batch.
+ */
+public class EmbeddingGallery implements FaceIndex {
+
+    public static final int DEFAULT_DIM = 512;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int dim;
+    private final Object writeLock = new Object();
+    private final Map<String, Integer> rowOf = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+
+    public EmbeddingGallery() {
+        this(DEFAULT_DIM);
+    }
+
+    public EmbeddingGallery(int dim) {
+        this.dim = dim;
+        this.snapshot = new Snapshot(new float[INITIAL_CAPACITY * dim], new String[INITIAL_CAPACITY], 0);
+    }
+
+    /* ---------------- WRITES ---------------- */
+
+    /** Insert or replace the embedding for a roll number. The vector is copied and normalized. */
+    @Override
+    public void put(String rollNo, float[] embedding) {
+        checkDim(embedding);
+        synchronized (writeLock) {
+            Snapshot s = snapshot;
+            Integer row = rowOf.get(rollNo);
+            if (row != null) {
+                float[] data = Arrays.copyOf(s.data, s.data.length);
+                writeRow(data, row, embedding);
+                snapshot = new Snapshot(data, s.rollNos, s.size);
+                return;
+            }
+
+            float[] data = s.data;
+            String[] rollNos = s.rollNos;
+            if (s.size == rollNos.length) {
+                int capacity = rollNos.length * 2;
+                data = Arrays.copyOf(data, capacity * dim);
+                rollNos = Arrays.copyOf(rollNos, capacity);
+            }
+            // Rows >= s.size are invisible to existing readers, so writing in place is safe
+            writeRow(data, s.size, embedding);
+            rollNos[s.size] = rollNo;
+            rowOf.put(rollNo, s.size);
+            snapshot = new Snapshot(data, rollNos, s.size + 1);
+        }
+    }
+
+    /**
+     * Insert or replace many embeddings under one lock and one new snapshot, so a
+     * batch re-enrollment copies the arrays at most once instead of once per row.
+     */
+    @Override
+    public void putAll(Map<String, float[]> embeddings) {
+        if (embeddings.isEmpty()) return;
+        for (float[] v : embeddings.values()) checkDim(v);
+        synchronized (writeLock) {
+            Snapshot s = snapshot;
+            int added = 0;
+            for (String rollNo : embeddings.keySet()) if (!rowOf.containsKey(rollNo)) added++;
+            int size = s.size + added;
+            int capacity = s.rollNos.length;
+            while (capacity < size) capacity *= 2;
+
+            float[] data = s.data;
+            String[] rollNos = s.rollNos;
+            if (added < embeddings.size() || capacity != rollNos.length) {
+                // Replaced rows are visible to readers, so the batch goes into one fresh copy
+                data = Arrays.copyOf(data, capacity * dim);
+                rollNos = Arrays.copyOf(rollNos, capacity);
+            }
+            int next = s.size;
+            for (Map.Entry<String, float[]> e : embeddings.entrySet()) {
+                Integer row = rowOf.get(e.getKey());
+                if (row == null) {
+                    row = next++;
+                    rollNos[row] = e.getKey();
+                    rowOf.put(e.getKey(), row);
+                }
+                writeRow(data, row, e.getValue());
+            }
+            snapshot = new Snapshot(data, rollNos, size);
+        }
+    }
+
+    /** Remove a roll number; the last row is moved into the hole. Returns false if absent. */
+    @Override
+    public boolean remove(String rollNo) {
+        synchronized (writeLock) {
+            Integer row = rowOf.remove(rollNo);
+            if (row == null) return false;
+
+            Snapshot s = snapshot;
+            int last = s.size - 1;
+            float[] data = Arrays.copyOf(s.data, s.data.length);
+            String[] rollNos = Arrays.copyOf(s.rollNos, s.rollNos.length);
+            if (row != last) {
+                System.arraycopy(data, last * dim, data, row * dim, dim);
+                rollNos[row] = rollNos[last];
+                rowOf.put(rollNos[row], row);
+            }
+            rollNos[last] = null;
+            snapshot = new Snapshot(data, rollNos, last);
+            return true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            rowOf.clear();
+            snapshot = new Snapshot(new float[INITIAL_CAPACITY * dim], new String[INITIAL_CAPACITY], 0);
+        }
+    }
+
+    private void writeRow(float[] data, int row, float[] v) {
+        int off = row * dim;
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        float inv = (float) (1.0 / (Math.sqrt(norm) + 1e-6));
+        for (int i = 0; i < dim; i++) data[off + i] = v[i] * inv;
+    }
+
+    private void checkDim(float[] v) {
+        if (v.length != dim)
+            throw new IllegalArgumentException("Expected " + dim + "-d embedding, got " + v.length);
+    }
+
+    /* ---------------- READS ---------------- */
+
+    @Override
+    public int size() {
+        return snapshot.size;
+    }
+
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public boolean contains(String rollNo) {
+        return rowOf.containsKey(rollNo);
+    }
+
+    /** Copy of the stored (normalized) embedding, or null. */
+    @Override
+    public float[] get(String rollNo) {
+        Snapshot s = snapshot;
+        Integer row = rowOf.get(rollNo);
+        if (row == null || row >= s.size || !rollNo.equals(s.rollNos[row])) return null;
+        return Arrays.copyOfRange(s.data, row * dim, (row + 1) * dim);
+    }
+
+    public List<String> rollNos() {
+        Snapshot s = snapshot;
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(s.rollNos, s.size)));
+    }
+
+    /** Best match for an L2-normalized query, or null when the gallery is empty. */
+    @Override
+    public FaceMatch best(float[] query) {
+        checkDim(query);
+        Snapshot s = snapshot;
+        int bestRow = -1;
+        float bestSim = Float.NEGATIVE_INFINITY;
+        for (int r = 0, off = 0; r < s.size; r++, off += dim) {
+            float sim = dot(query, s.data, off, dim);
+            if (sim > bestSim) { bestSim = sim; bestRow = r; }
+        }
+        return bestRow < 0 ? null : new FaceMatch(s.rollNos[bestRow], bestSim);
+    }
+
+    /**
+     * Best match for several queries in one pass: each gallery row is loaded once and
+     * scored against every query while it is still in cache.
+     */
+    @Override
+    public FaceMatch[] bestAll(float[][] queries) {
+        for (float[] q : queries) checkDim(q);
+        Snapshot s = snapshot;
+        int n = queries.length;
+        int[] bestRow = new int[n];
+        float[] bestSim = new float[n];
+        Arrays.fill(bestRow, -1);
+        Arrays.fill(bestSim, Float.NEGATIVE_INFINITY);
+        for (int r = 0, off = 0; r < s.size; r++, off += dim) {
+            for (int i = 0; i < n; i++) {
+                float sim = dot(queries[i], s.data, off, dim);
+                if (sim > bestSim[i]) { bestSim[i] = sim; bestRow[i] = r; }
+            }
+        }
+
+        FaceMatch[] out = new FaceMatch[n];
+        for (int i = 0; i < n; i++)
+            if (bestRow[i] >= 0) out[i] = new FaceMatch(s.rollNos[bestRow[i]], bestSim[i]);
+        return out;
+    }
+
+    /** Up to k best matches for an L2-normalized query, highest similarity first. */
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        checkDim(query);
+        Snapshot s = snapshot;
+        int n = Math.min(k, s.size);
+        if (n <= 0) return Collections.emptyList();
+
+        // Small sorted insertion buffer: k is tiny compared to the gallery
+        int[] rows = new int[n];
+        float[] sims = new float[n];
+        Arrays.fill(sims, Float.NEGATIVE_INFINITY);
+        for (int r = 0, off = 0; r < s.size; r++, off += dim) {
+            float sim = dot(query, s.data, off, dim);
+            if (sim <= sims[n - 1]) continue;
+            int i = n - 1;
+            while (i > 0 && sims[i - 1] < sim) {
+                sims[i] = sims[i - 1];
+                rows[i] = rows[i - 1];
+                i--;
+            }
+            sims[i] = sim;
+            rows[i] = r;
+        }
+
+        List<FaceMatch> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new FaceMatch(s.rollNos[rows[i]], sims[i]));
+        return out;
+    }
+
+    /**
+     * Dot product against one gallery row. Four independent accumulators break the
+     * add dependency chain so the JIT can keep several FMAs in flight per cycle.
+     */
+    static float dot(float[] q, float[] data, int off, int dim) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int upper = dim & ~3; i < upper; i += 4) {
+            s0 += q[i] * data[off + i];
+            s1 += q[i + 1] * data[off + i + 1];
+            s2 += q[i + 2] * data[off + i + 2];
+            s3 += q[i + 3] * data[off + i + 3];
+        }
+        for (; i < dim; i++) s0 += q[i] * data[off + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /* ---------------- Helper ---------------- */
+    private static final class Snapshot {
+        final float[] data;
+        final String[] rollNos;
+        final int size;
+
+        Snapshot(float[] data, String[] rollNos, int size) {
+            this.data = data;
+            this.rollNos = rollNos;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.attendancesystem.service;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only gallery file of fixed-size records:
+ *
+ * <pre>
+ * header : magic "FGAL" | format | dim | recordSize | 16 reserved bytes
+ * record : status(1) | pad(3) | crc32(4) | rollNo(64) | name(128) | modelVersion(32) | dim x float32
+ * </pre>
+ *
+ * Strings are a u16 UTF-8 length followed by the bytes. The CRC covers everything
+ * after the crc field, so a record torn by a crash is detected and dropped on the
+ * next start. Records are never rewritten except for their one-byte status, which
+ * makes tombstoning atomic. On startup the file is memory-mapped and the vectors
+ * are bulk-copied straight into the caller's index.
+ */
+public class EmbeddingStore implements Closeable {
+
+    private static final int MAGIC = 0x4647414C; // "FGAL"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 2;
+
+    private static final int ROLL_FIELD = 64;
+    private static final int NAME_FIELD = 128;
+    private static final int MODEL_FIELD = 32;
+    private static final int ROLL_OFFSET = 8;
+    private static final int NAME_OFFSET = ROLL_OFFSET + ROLL_FIELD;
+    private static final int MODEL_OFFSET = NAME_OFFSET + NAME_FIELD;
+    private static final int VECTOR_OFFSET = MODEL_OFFSET + MODEL_FIELD;
+
+    /** Compact once dead records outnumber live ones (and there are enough to matter). */
+    private static final int MIN_DEAD_FOR_COMPACTION = 64;
+
+    /** Receives each live record during {@link #load}. */
+    public interface Loader {
+        void accept(String rollNo, String name, float[] embedding);
+    }
+
+    private final Path path;
+    private final int dim;
+    private final String modelVersion;
+    private final int recordSize;
+    private final ByteBuffer recordBuffer;
+    private final Map<String, Long> offsetOf = new HashMap<>();
+    private FileChannel channel;
+    private long end;
+    private int dead;
+
+    public EmbeddingStore(Path path, int dim, String modelVersion) throws IOException {
+        this.path = path;
+        this.dim = dim;
+        this.modelVersion = modelVersion;
+        this.recordSize = VECTOR_OFFSET + dim * Float.BYTES;
+        this.recordBuffer = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        open();
+    }
+
+    public Path getPath() { return path; }
+    public String getModelVersion() { return modelVersion; }
+
+    public synchronized int size() {
+        return offsetOf.size();
+    }
+
+    private void open() throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT).putInt(dim).putInt(recordSize).rewind();
+            channel.truncate(0);
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+        end = HEADER_SIZE;
+    }
+
+    /* ---------------- LOAD ---------------- */
+
+    /**
+     * Maps the file, validates every record and hands live ones for the current model
+     * version to the loader. A torn tail record is truncated away; records from another
+     * model version count as dead and disappear at the next compaction.
+     * Returns the number of records loaded.
+     */
+    public synchronized int load(Loader loader) throws IOException {
+        offsetOf.clear();
+        dead = 0;
+
+        long size = channel.size();
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(0) != MAGIC || map.getInt(4) != FORMAT || map.getInt(8) != dim || map.getInt(12) != recordSize)
+            throw new IOException("Incompatible gallery file: " + path);
+
+        CRC32 crc = new CRC32();
+        long offset = HEADER_SIZE;
+        int loaded = 0;
+        while (offset + recordSize <= size) {
+            int pos = (int) offset;
+            byte status = map.get(pos);
+            if (status != LIVE && status != DELETED) break; // never completed
+
+            ByteBuffer record = map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            record.position(pos + ROLL_OFFSET).limit(pos + recordSize);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != map.getInt(pos + 4)) break; // torn write
+
+            if (status == DELETED) {
+                dead++;
+            } else if (!modelVersion.equals(readString(map, pos + MODEL_OFFSET))) {
+                dead++;
+            } else {
+                String rollNo = readString(map, pos + ROLL_OFFSET);
+                Long previous = offsetOf.put(rollNo, offset);
+                if (previous != null) {
+                    // Crash between appending a replacement and tombstoning the original
+                    markDeleted(previous);
+                    loaded--;
+                }
+                float[] embedding = new float[dim];
+                map.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+                        .position(pos + VECTOR_OFFSET).asFloatBuffer().get(embedding);
+                loader.accept(rollNo, readString(map, pos + NAME_OFFSET), embedding);
+                loaded++;
+            }
+            offset += recordSize;
+        }
+
+        if (offset < size) {
+            System.out.println("⚠️ Gallery file " + path + ": dropping " + (size - offset) + " bytes of incomplete records");
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        end = offset;
+
+        if (dead >= MIN_DEAD_FOR_COMPACTION && dead > offsetOf.size()) compact();
+        return loaded;
+    }
+
+    /* ---------------- WRITE ---------------- */
+
+    /** Durably stores (or replaces) a roll number's embedding before returning. */
+    public synchronized void put(String rollNo, String name, float[] embedding) throws IOException {
+        if (embedding.length != dim)
+            throw new IllegalArgumentException("Expected " + dim + "-d embedding, got " + embedding.length);
+
+        long offset = end;
+        writeRecord(offset, rollNo, name, embedding);
+        end += recordSize;
+        channel.force(false);
+
+        // Only tombstone the old record once the replacement is on disk
+        Long previous = offsetOf.put(rollNo, offset);
+        if (previous != null) {
+            markDeleted(previous);
+            channel.force(false);
+        }
+        maybeCompact();
+    }
+
+    /**
+     * Stores many embeddings (e.g. a bulk enrollment) with one fsync for the new
+     * records and one for the tombstones they replace. Everything is validated
+     * before the first byte is written. names supplies each roll number's name.
+     */
+    public synchronized void putAll(Map<String, float[]> embeddings, Map<String, String> names) throws IOException {
+        for (Map.Entry<String, float[]> e : embeddings.entrySet()) {
+            if (e.getValue().length != dim)
+                throw new IllegalArgumentException("Expected " + dim + "-d embedding, got " + e.getValue().length);
+            checkLength(e.getKey(), ROLL_FIELD);
+            checkLength(names.getOrDefault(e.getKey(), ""), NAME_FIELD);
+        }
+
+        Map<String, Long> written = new HashMap<>();
+        for (Map.Entry<String, float[]> e : embeddings.entrySet()) {
+            writeRecord(end, e.getKey(), names.get(e.getKey()), e.getValue());
+            written.put(e.getKey(), end);
+            end += recordSize;
+        }
+        channel.force(false);
+
+        boolean replaced = false;
+        for (Map.Entry<String, Long> e : written.entrySet()) {
+            Long previous = offsetOf.put(e.getKey(), e.getValue());
+            if (previous != null) {
+                markDeleted(previous);
+                replaced = true;
+            }
+        }
+        if (replaced) channel.force(false);
+        maybeCompact();
+    }
+
+    public synchronized boolean remove(String rollNo) throws IOException {
+        Long offset = offsetOf.remove(rollNo);
+        if (offset == null) return false;
+        markDeleted(offset);
+        channel.force(false);
+        maybeCompact();
+        return true;
+    }
+
+    private void writeRecord(long offset, String rollNo, String name, float[] embedding) throws IOException {
+        ByteBuffer b = recordBuffer;
+        b.clear();
+        b.put(0, LIVE);
+        writeString(b, ROLL_OFFSET, ROLL_FIELD, rollNo);
+        writeString(b, NAME_OFFSET, NAME_FIELD, name == null ? "" : name);
+        writeString(b, MODEL_OFFSET, MODEL_FIELD, modelVersion);
+        b.position(VECTOR_OFFSET);
+        b.asFloatBuffer().put(embedding);
+
+        CRC32 crc = new CRC32();
+        b.position(ROLL_OFFSET).limit(recordSize);
+        crc.update(b);
+        b.putInt(4, (int) crc.getValue());
+
+        b.position(0).limit(recordSize);
+        writeFully(channel, b, offset);
+    }
+
+    private void markDeleted(long offset) throws IOException {
+        ByteBuffer one = ByteBuffer.wrap(new byte[]{DELETED});
+        writeFully(channel, one, offset);
+        dead++;
+    }
+
+    /* ---------------- COMPACTION ---------------- */
+
+    private void maybeCompact() throws IOException {
+        if (dead >= MIN_DEAD_FOR_COMPACTION && dead > offsetOf.size()) compact();
+    }
+
+    /**
+     * Copies live records into a sibling file, fsyncs it and atomically renames it over
+     * the original, then fsyncs the directory, so a crash leaves either the old or the
+     * new file, never a mix.
+     */
+    public synchronized void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+        Map<String, Long> moved = new HashMap<>();
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            writeFully(out, header, 0);
+
+            long pos = HEADER_SIZE;
+            for (Map.Entry<String, Long> e : offsetOf.entrySet()) {
+                record.clear();
+                readFully(channel, record, e.getValue());
+                record.flip();
+                writeFully(out, record, pos);
+                moved.put(e.getKey(), pos);
+                pos += recordSize;
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp); // the original is untouched
+            throw e;
+        }
+
+        channel.close();
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(path.toAbsolutePath().getParent()); // makes the rename itself durable
+        } catch (IOException e) {
+            // e.g. the file is still mapped on Windows: keep the uncompacted original
+            Files.deleteIfExists(tmp);
+            open();
+            end = channel.size();
+            System.out.println("⚠️ Gallery compaction skipped: " + e.getMessage());
+            return;
+        }
+        open();
+        offsetOf.clear();
+        offsetOf.putAll(moved);
+        end = HEADER_SIZE + (long) moved.size() * recordSize;
+        dead = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) channel.close();
+    }
+
+    /* ---------------- Helper ---------------- */
+    /** Positional writes may be partial; loops until the buffer is drained. */
+    private static void writeFully(FileChannel ch, ByteBuffer b, long offset) throws IOException {
+        while (b.hasRemaining()) offset += ch.write(b, offset);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long offset) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, offset);
+            if (n < 0) throw new EOFException("Gallery file ends inside a record at " + offset);
+            offset += n;
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            // Windows cannot open a directory as a channel; its renames are metadata-journaled
+        }
+    }
+    private static void checkLength(String s, int field) {
+        if (s.getBytes(StandardCharsets.UTF_8).length > field - 2)
+            throw new IllegalArgumentException("Value too long for gallery record (" + (field - 2) + " bytes max): " + s);
+    }
+
+    private static void writeString(ByteBuffer b, int offset, int field, String s) {
+        checkLength(s, field);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putShort(offset, (short) bytes.length);
+        b.put(offset + 2, bytes);
+        for (int i = offset + 2 + bytes.length; i < offset + field; i++) b.put(i, (byte) 0);
+    }
+
+    private static String readString(ByteBuffer b, int offset) {
+        int len = Short.toUnsignedInt(b.getShort(offset));
+        byte[] bytes = new byte[len];
+        b.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.attendancesystem.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searchable set of registered face embeddings keyed by roll number.
+ * Implementations expect L2-normalized vectors and score by cosine similarity.
+ */
+public interface FaceIndex {
+
+    /** Insert, or replace the existing embedding for the roll number (re-enrollment). */
+    void put(String rollNo, float[] embedding);
+
+    /** Inserts or replaces several embeddings; implementations may publish them as one update. */
+    default void putAll(Map<String, float[]> embeddings) {
+        embeddings.forEach(this::put);
+    }
+
+    /** Returns false when the roll number was not indexed. */
+    boolean remove(String rollNo);
+
+    /** Up to k nearest embeddings, highest similarity first. */
+    List<FaceMatch> search(float[] query, int k);
+
+    /** Single nearest embedding, or null when the index is empty. */
+    default FaceMatch best(float[] query) {
+        List<FaceMatch> top = search(query, 1);
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    /** Best match for each query (null entries when the index is empty). */
+    default FaceMatch[] bestAll(float[][] queries) {
+        FaceMatch[] out = new FaceMatch[queries.length];
+        for (int i = 0; i < queries.length; i++) out[i] = best(queries[i]);
+        return out;
+    }
+
+    boolean contains(String rollNo);
+
+    /** Copy of the stored (normalized) embedding, or null when not indexed. */
+    float[] get(String rollNo);
+
+    int size();
+
+    void clear();
+}
@@ -0,0 +1,15 @@
+package com.example.attendancesystem.service;
+
+/** A single gallery hit: roll number plus cosine similarity to the query. */
+public class FaceMatch {
+    private final String rollNo;
+    private final double similarity;
+
+    public FaceMatch(String rollNo, double similarity) {
+        this.rollNo = rollNo;
+        this.similarity = similarity;
+    }
+
+    public String getRollNo() { return rollNo; }
+    public double getSimilarity() { return similarity; }
+}
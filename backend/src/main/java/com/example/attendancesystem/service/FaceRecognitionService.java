@@ -1,97 +1,243 @@
 package com.example.attendancesystem.service;
 
 import ai.onnxruntime.*;
+import com.example.attendancesystem.config.ModelConfig;
 import com.example.attendancesystem.dto.FaceResult;
-import org.bytedeco.javacpp.FloatPointer;
-import org.bytedeco.javacpp.indexer.UByteIndexer;
-import org.bytedeco.opencv.global.opencv_core;
-import org.bytedeco.opencv.global.opencv_dnn;
+import com.example.attendancesystem.dto.RecognitionLogPage;
+import com.example.attendancesystem.dto.RecognitionLogQuery;
+import com.example.attendancesystem.model.Student;
+import com.example.attendancesystem.repository.StudentRepository;
+import lombok.RequiredArgsConstructor;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
 import org.bytedeco.opencv.global.opencv_imgcodecs;
-import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.*;
-import org.bytedeco.opencv.opencv_dnn.Net;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
-import java.nio.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@RequiredArgsConstructor
 public class FaceRecognitionService {
 
-    private OrtEnvironment env;
-    private OrtSession arcfaceSession;
-    private String arcfaceInputName = null;
-    private Net retinaNet;
-
-    private final Map<String, float[]> registeredEmbeddings = new ConcurrentHashMap<>();
+    private RetinaFaceDetectorPool detectorPool;
+    private final RetinaFaceDecoder retinaDecoder =
+            new RetinaFaceDecoder(RETINA_INPUT_SIZE, RETINA_INPUT_SIZE, DETECTION_THRESHOLD, NMS_IOU_THRESHOLD);
+    private ArcFaceEmbedder embedder;
+    private ArcFaceBatcher embeddingBatcher;
+    private FrameGate frameGate;
+
+    // ✅ Micro-batching of concurrent single-face ArcFace calls (max-size 1 disables it)
+    @Value("${face.embedding.batch.window-micros:2000}")
+    private long batchWindowMicros;
+    @Value("${face.embedding.batch.max-size:16}")
+    private int batchMaxSize;
+
+    // ✅ Preallocated ArcFace input/output buffers: runs of up to batch-capacity faces, count 0 = one per core
+    @Value("${face.embedding.workspace.batch-capacity:16}")
+    private int workspaceBatchCapacity;
+    @Value("${face.embedding.workspace.count:0}")
+    private int workspaceCount;
+
+    // ✅ RetinaFace Net pool: one exclusive Net per concurrent detection (0 = one per core)
+    @Value("${face.detector.pool-size:0}")
+    private int detectorPoolSize;
+    @Value("${face.detector.borrow-timeout-ms:2000}")
+    private long detectorBorrowTimeoutMs;
+
+    // ✅ Frame/face quality gate in front of detection and embedding
+    @Value("${face.gate.min-motion:2.0}")
+    private double gateMinMotion;
+    @Value("${face.gate.min-brightness:40}")
+    private double gateMinBrightness;
+    @Value("${face.gate.max-brightness:220}")
+    private double gateMaxBrightness;
+    @Value("${face.gate.min-sharpness:50}")
+    private double gateMinSharpness;
+    @Value("${face.gate.min-face-pixels:40}")
+    private int gateMinFacePixels;
+    @Value("${face.gate.min-face-score:0.8}")
+    private float gateMinFaceScore;
+
+    // ✅ Lectures with a roster search only their own students; true = fall back to everyone on no match
+    @Value("${face.roster.fallback-global:false}")
+    private boolean rosterFallbackGlobal;
+
+    @Value("${face.models.retinaface.resource:models/retinaface-resnet50.onnx}")
+    private String retinaResource;
+
+    private final ModelRegistry modelRegistry;
+    private final ImageDecoder imageDecoder;
+    private final FaceIndex faceIndex;
+    private final EmbeddingStore embeddingStore;
+    private final RosterService rosterService;
+    private final StudentRepository studentRepository;
+    private final RecognitionMetrics metrics;
+    private final RecognitionLogService recognitionLogs;
+    private final InferenceAdmission admission;
     private final Map<String, String> studentNames = new ConcurrentHashMap<>();
-    private final List<Map<String, Object>> recognitionLogs = Collections.synchronizedList(new ArrayList<>());
 
-    // ✅ RetinaFace MobileNet-320 input size
-    private static final int RETINA_INPUT_SIZE = 320;
+    // ✅ RetinaFace MobileNet-320 input size (public: the offline GalleryBuilder runs the same pipeline)
+    public static final int RETINA_INPUT_SIZE = 320;
 
     // ✅ ArcFace similarity threshold
     private static final double MATCH_THRESHOLD = 0.60;
 
+    // ✅ RetinaFace score threshold + NMS overlap for multi-face photos
+    public static final float DETECTION_THRESHOLD = 0.6f;
+    public static final float NMS_IOU_THRESHOLD = 0.4f;
+
     @PostConstruct
     public void loadModels() throws Exception {
-        env = OrtEnvironment.getEnvironment();
-
-        // ✅ ArcFace w600k_r50 (~90 MB, FP32)
-        Resource arcfaceResource = new ClassPathResource("models/w600k_r50.onnx");
-        File arcfaceFile = copyToTempFile(arcfaceResource, "arcface-r50-");
-        arcfaceSession = env.createSession(arcfaceFile.getAbsolutePath(), new OrtSession.SessionOptions());
-        arcfaceInputName = arcfaceSession.getInputNames().iterator().next();
-
-        // ✅ RetinaFace MobileNet-320 (~2 MB, FP32)
-        Resource retinaResource = new ClassPathResource("models/retinaface-resnet50.onnx");
-        File retinaFile = copyToTempFile(retinaResource, "retinaface-mb-");
-        retinaNet = opencv_dnn.readNetFromONNX(retinaFile.getAbsolutePath());
+        // ✅ ArcFace w600k_r50 sessions are owned by ModelRegistry; one dispatcher per shard
+        embedder = new ArcFaceEmbedder(modelRegistry, ModelConfig.ARCFACE,
+                Math.max(workspaceBatchCapacity, batchMaxSize), workspaceCount);
+        if (batchMaxSize > 1) {
+            embeddingBatcher = new ArcFaceBatcher(this::getFaceEmbeddings, batchWindowMicros, batchMaxSize,
+                    modelRegistry.sessionCount(ModelConfig.ARCFACE));
+        }
 
-        System.out.println("✅ Models loaded: RetinaFace MobileNet-320 + ArcFace w600k_r50");
+        // ✅ RetinaFace MobileNet-320 (~2 MB, FP32), run by OpenCV DNN from the shared model cache
+        Path retinaFile = modelRegistry.extract(retinaResource);
+        detectorPool = new RetinaFaceDetectorPool(retinaFile.toString(), detectorPoolSize,
+                RETINA_INPUT_SIZE, detectorBorrowTimeoutMs);
+
+        frameGate = new FrameGate(gateMinMotion, gateMinBrightness, gateMaxBrightness, gateMinSharpness,
+                gateMinFacePixels, gateMinFaceScore);
+
+        System.out.println("✅ Models loaded: RetinaFace MobileNet-320 (x" + detectorPool.size()
+                + ") + ArcFace w600k_r50");
+
+        metrics.gauge("face.gallery.size", "Enrolled students in the face index", faceIndex, FaceIndex::size);
+        metrics.gauge("face.detector.pool.available", "Idle RetinaFace detectors", detectorPool,
+                RetinaFaceDetectorPool::available);
+        metrics.gauge("native.javacpp.bytes", "Native bytes allocated through JavaCPP", this,
+                s -> Pointer.totalBytes());
+        metrics.gauge("native.javacpp.pointers", "Live JavaCPP pointers with a deallocator", this,
+                s -> Pointer.totalCount());
+        metrics.gauge("native.physical.bytes", "Process resident set size", this,
+                s -> NativeMemory.physicalBytes());
+
+        long t0 = System.nanoTime();
+        int restored = embeddingStore.load((rollNo, name, emb) -> {
+            faceIndex.put(rollNo, emb);
+            studentNames.put(rollNo, name);
+        });
+        System.out.printf("✅ Gallery restored: %d students from %s in %d ms%n",
+                restored, embeddingStore.getPath(), (System.nanoTime() - t0) / 1_000_000);
+
+        rosterService.rebuild(); // partitions copy embeddings out of the restored index
+
+        // ✅ Gallery students registered before the student table was kept
+        Set<String> missing = new HashSet<>(studentNames.keySet());
+        for (Student s : studentRepository.findAllById(studentNames.keySet())) missing.remove(s.getRollNo());
+        if (!missing.isEmpty()) {
+            List<Student> rows = new ArrayList<>();
+            for (String rollNo : missing) rows.add(new Student(rollNo, studentNames.get(rollNo)));
+            studentRepository.saveAll(rows);
+            System.out.println("✅ Student table: added " + rows.size() + " gallery student(s)");
+        }
     }
 
-    private File copyToTempFile(Resource resource, String prefix) throws IOException {
-        File tempFile = File.createTempFile(prefix, ".onnx");
-        try (InputStream in = resource.getInputStream(); OutputStream out = new FileOutputStream(tempFile)) {
-            in.transferTo(out);
-        }
-        tempFile.deleteOnExit();
-        return tempFile;
+    @PreDestroy
+    public void shutdown() {
+        if (embeddingBatcher != null) embeddingBatcher.close();
+        if (embedder != null) embedder.close();
+        if (detectorPool != null) detectorPool.close();
     }
 
     /* ---------------- REGISTER ---------------- */
     public ResponseEntity<String> registerStudent(String rollNo, String name, List<MultipartFile> files) {
-        try {
-            if (files == null || files.isEmpty())
+        long t0 = System.nanoTime();
+        String outcome = "error";
+        try (PointerScope scope = NativeMemory.scope()) {
+            if (files == null || files.isEmpty()) {
+                outcome = "bad_request";
                 return ResponseEntity.badRequest().body("No image files provided");
-
-            List<float[]> embeddings = new ArrayList<>();
-            for (MultipartFile file : files) {
-                Mat face = detectSingleFace(file);
-                if (face == null)
-                    return ResponseEntity.badRequest().body("❌ No face in " + file.getOriginalFilename());
-                embeddings.add(getFaceEmbedding(face));
             }
 
-            float[] avg = averageEmbeddings(embeddings);
-            registeredEmbeddings.put(rollNo, avg);
+            List<Mat> images = new ArrayList<>(files.size());
+            for (MultipartFile file : files) images.add(imageDecoder.decode(file));
+            long mark = metrics.stage(RecognitionMetrics.REGISTER, "decode", t0);
+
+            float[] avg;
+            try (InferenceAdmission.Permit permit = admission.acquire(InferenceAdmission.Priority.ENROLLMENT)) {
+                mark = metrics.stage(RecognitionMetrics.REGISTER, "admit", mark);
+                List<Mat> faces = new ArrayList<>(images.size());
+                for (int i = 0; i < images.size(); i++) {
+                    Mat face = detectSingleFace(images.get(i));
+                    if (face == null) {
+                        outcome = "no_face";
+                        return ResponseEntity.badRequest().body("❌ No face in " + files.get(i).getOriginalFilename());
+                    }
+                    faces.add(face);
+                }
+                mark = metrics.stage(RecognitionMetrics.REGISTER, "detect", mark);
+
+                avg = averageEmbeddings(Arrays.asList(getFaceEmbeddings(faces)));
+                mark = metrics.stage(RecognitionMetrics.REGISTER, "embed", mark);
+            }
+            embeddingStore.put(rollNo, name, avg); // durable before it becomes visible
+            faceIndex.put(rollNo, avg); // replaces any previous enrollment
+            rosterService.onEmbeddingChanged(rollNo, avg);
             studentNames.put(rollNo, name);
+            studentRepository.save(new Student(rollNo, name));
+            metrics.stage(RecognitionMetrics.REGISTER, "persist", mark);
 
+            outcome = "success";
             return ResponseEntity.ok("✅ Registered " + name + " (" + rollNo + ")");
+        } catch (InferenceAdmission.RejectedException e) {
+            outcome = "shed";
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("❌ Registration failed: " + e.getMessage());
+        } finally {
+            metrics.request(RecognitionMetrics.REGISTER, outcome, t0);
         }
     }
 
+    /* ---------------- BULK ENROLLMENT (see BulkEnrollmentService) ---------------- */
+    /**
+     * Face crop of one enrollment photo (highest detector score), or null when there is none.
+     * Belongs to the caller's PointerScope, if any; keep it to hand it to another thread.
+     */
+    public Mat detectEnrollmentFace(Mat img) throws IOException {
+        return detectSingleFace(img);
+    }
+
+    /** Embeds a batch of crops in one ArcFace run per workspace chunk. */
+    public float[][] embedFaces(List<Mat> faces) throws OrtException {
+        return getFaceEmbeddings(faces);
+    }
+
+    /**
+     * Publishes many enrollments at once: one gallery write for all of them, then
+     * the index, the roster partitions and the student table, as registerStudent
+     * does for one. Embeddings must already be L2-normalized.
+     */
+    public void enrollAll(Map<String, float[]> embeddings, Map<String, String> names) throws IOException {
+        if (embeddings.isEmpty()) return;
+        embeddingStore.putAll(embeddings, names); // durable before it becomes visible
+        faceIndex.putAll(embeddings); // one gallery snapshot for the whole batch
+        rosterService.onEmbeddingsChanged(embeddings);
+        List<Student> rows = new ArrayList<>(embeddings.size());
+        for (String rollNo : embeddings.keySet()) {
+            studentNames.put(rollNo, names.get(rollNo));
+            rows.add(new Student(rollNo, names.get(rollNo)));
+        }
+        studentRepository.saveAll(rows);
+    }
+
     private float[] averageEmbeddings(List<float[]> list) {
         int len = list.get(0).length;
         float[] avg = new float[len];
@@ -101,139 +247,368 @@ public class FaceRecognitionService {
     }
 
     /* ---------------- RECOGNIZE SINGLE ---------------- */
-    public FaceResult recognizeStudentFace(MultipartFile file, String lecture) {
+    /** clientId identifies the sender for the unchanged-frame check; null skips that check. */
+    public FaceResult recognizeStudentFace(MultipartFile file, String lecture, String clientId) {
+        long t0 = System.nanoTime();
+        FaceResult result;
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = imageDecoder.decode(file);
+            long mark = metrics.stage(RecognitionMetrics.RECOGNIZE, "decode", t0);
+            result = recognizeStudentFace(img, lecture, clientId, mark);
+        } catch (InferenceAdmission.RejectedException e) {
+            metrics.request(RecognitionMetrics.RECOGNIZE, "shed", t0);
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            result = new FaceResult(null, "Error: " + e.getMessage(), 0.0, "error");
+        }
+        metrics.request(RecognitionMetrics.RECOGNIZE, result.getStatus(), t0);
+        return result;
+    }
+
+    /** Raw image body (e.g. image/jpeg from the live scanner), no multipart encoding. */
+    public FaceResult recognizeStudentFace(InputStream body, long length, String lecture, String clientId)
+            throws ImageDecoder.ImageTooLargeException {
+        long t0 = System.nanoTime();
+        FaceResult result;
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = imageDecoder.decode(body, length);
+            long mark = metrics.stage(RecognitionMetrics.RECOGNIZE, "decode", t0);
+            result = recognizeStudentFace(img, lecture, clientId, mark);
+        } catch (InferenceAdmission.RejectedException e) {
+            metrics.request(RecognitionMetrics.RECOGNIZE, "shed", t0);
+            throw e;
+        } catch (ImageDecoder.ImageTooLargeException e) {
+            metrics.request(RecognitionMetrics.RECOGNIZE, "too_large", t0);
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            result = new FaceResult(null, "Error: " + e.getMessage(), 0.0, "error");
+        }
+        metrics.request(RecognitionMetrics.RECOGNIZE, result.getStatus(), t0);
+        return result;
+    }
+
+    /** mark is the System.nanoTime() value where the gate stage starts. */
+    private FaceResult recognizeStudentFace(Mat img, String lecture, String clientId, long mark) {
         try {
-            Mat face = detectSingleFace(file);
-            if (face == null) {
+            if (img == null) {
                 return new FaceResult(null, "No face detected", 0.0, "fail");
             }
 
-            float[] emb = getFaceEmbedding(face);
-            MatchResult match = findBestMatchWithScore(emb);
+            // ✅ Unchanged, dark, bright or blurry frames never reach RetinaFace
+            FrameGate.Verdict frame = frameGate.checkFrame(clientId, img);
+            mark = metrics.stage(RecognitionMetrics.RECOGNIZE, "gate", mark);
+            if (frame != FrameGate.Verdict.PASS) {
+                return new FaceResult(null, frame.message(), 0.0, frame.status());
+            }
+
+            float[] emb;
+            try (InferenceAdmission.Permit permit = admission.acquire(InferenceAdmission.Priority.RECOGNITION)) {
+                mark = metrics.stage(RecognitionMetrics.RECOGNIZE, "admit", mark);
+                List<Float> scores = new ArrayList<>(1);
+                List<Rect> boxes = detectFaces(img, scores);
+                mark = metrics.stage(RecognitionMetrics.RECOGNIZE, "detect", mark);
+                if (boxes.isEmpty()) {
+                    return new FaceResult(null, "No face detected", 0.0, "fail");
+                }
+
+                // ✅ Tiny or low-score faces never reach ArcFace
+                FrameGate.Verdict quality = frameGate.checkFace(boxes.get(0), scores.get(0));
+                if (quality != FrameGate.Verdict.PASS) {
+                    return new FaceResult(null, quality.message(), 0.0, quality.status());
+                }
+
+                Mat face = NativeMemory.crop(img, boxes.get(0));
+                emb = getFaceEmbedding(face);
+                mark = metrics.stage(RecognitionMetrics.RECOGNIZE, "embed", mark);
+                permit.sample(); // detection + one embedding: the latency the adaptive limit tracks
+            }
+            FaceMatch match = findBestMatchWithScore(emb, lecture);
+            metrics.stage(RecognitionMetrics.RECOGNIZE, "match", mark);
 
-            if (match != null && match.similarity > MATCH_THRESHOLD) {
-                String name = studentNames.get(match.rollNo);
+            if (match != null && match.getSimilarity() > MATCH_THRESHOLD) {
+                String name = studentNames.get(match.getRollNo());
 
                 if (name == null) {
-                    return new FaceResult(match.rollNo, "Unregistered name", match.similarity, "warning");
+                    return new FaceResult(match.getRollNo(), "Unregistered name", match.getSimilarity(), "warning");
                 }
 
-                Map<String, Object> log = new HashMap<>();
-                log.put("rollNo", match.rollNo);
-                log.put("name", name);
-                log.put("lecture", lecture);
-                log.put("time", new Date().toString());
-                log.put("accuracy", match.similarity);
-                recognitionLogs.add(log);
+                logRecognition(match.getRollNo(), name, lecture, match.getSimilarity());
 
-                return new FaceResult(match.rollNo, name, match.similarity, "success");
+                return new FaceResult(match.getRollNo(), name, match.getSimilarity(), "success");
             }
 
             return new FaceResult(null, "Unknown", 0.0, "unknown");
 
+        } catch (InferenceAdmission.RejectedException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return new FaceResult(null, "Error: " + e.getMessage(), 0.0, "error");
         }
     }
 
-    /* ---------------- FACE DETECTION ---------------- */
-    private Mat detectSingleFace(MultipartFile file) throws IOException {
-        File conv = convert(file);
-        Mat img = opencv_imgcodecs.imread(conv.getAbsolutePath());
-        if (img == null || img.empty()) return null;
-
-        Mat resized = new Mat();
-        opencv_imgproc.resize(img, resized, new Size(RETINA_INPUT_SIZE, RETINA_INPUT_SIZE));
-        Mat blob = opencv_dnn.blobFromImage(resized, 1.0, new Size(RETINA_INPUT_SIZE, RETINA_INPUT_SIZE),
-                new Scalar(104, 117, 123, 0), false, false, opencv_core.CV_32F);
-
-        retinaNet.setInput(blob);
-        MatVector outs = new MatVector();
-        retinaNet.forward(outs, retinaNet.getUnconnectedOutLayersNames());
-
-        if (outs.size() < 2) return null;
-
-        FloatPointer conf = new FloatPointer(outs.get(1).data());
-        FloatPointer loc = new FloatPointer(outs.get(0).data());
-        List<float[]> anchors = generateAnchors(RETINA_INPUT_SIZE, RETINA_INPUT_SIZE);
-
-        float maxScore = 0;
-        Rect bestRect = null;
-        int N = Math.min(anchors.size(), (int) outs.get(0).size(1));
-
-        for (int i = 0; i < N; i++) {
-            float score = conf.get(i * 2 + 1);
-            if (score < 0.6f) continue;
-
-            if (score > maxScore) {
-                maxScore = score;
-
-                float dx = loc.get(i * 4);
-                float dy = loc.get(i * 4 + 1);
-                float dw = loc.get(i * 4 + 2);
-                float dh = loc.get(i * 4 + 3);
-
-                float[] a = anchors.get(i);
-                float cx = a[0] + dx * 0.1f * a[2];
-                float cy = a[1] + dy * 0.1f * a[3];
-                float w = (float) (Math.exp(dw * 0.2) * a[2]);
-                float h = (float) (Math.exp(dh * 0.2) * a[3]);
-
-                int x1 = Math.max(0, Math.round((cx - w / 2f) * img.cols()));
-                int y1 = Math.max(0, Math.round((cy - h / 2f) * img.rows()));
-                int bw = Math.min(img.cols() - x1, Math.round(w * img.cols()));
-                int bh = Math.min(img.rows() - y1, Math.round(h * img.rows()));
-
-                bestRect = new Rect(x1, y1, bw, bh);
+    /* ---------------- RECOGNIZE GROUP ---------------- */
+    /**
+     * Detects every face in a classroom photo, embeds all of them in one ArcFace
+     * call and matches them in one pass over the gallery. A student is reported
+     * at most once: if two faces resolve to the same roll number only the
+     * stronger match keeps it.
+     */
+    public List<DetectedFace> recognizeGroup(MultipartFile file, String lecture) throws IOException, OrtException {
+        long t0 = System.nanoTime();
+        String outcome = "error";
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = imageDecoder.decode(file);
+            List<DetectedFace> faces = recognizeGroup(img, lecture,
+                    metrics.stage(RecognitionMetrics.GROUP, "decode", t0));
+            outcome = faces.isEmpty() ? "no_face"
+                    : faces.stream().anyMatch(f -> "success".equals(f.getStatus())) ? "success" : "unknown";
+            return faces;
+        } catch (InferenceAdmission.RejectedException e) {
+            outcome = "shed";
+            throw e;
+        } finally {
+            metrics.request(RecognitionMetrics.GROUP, outcome, t0);
+        }
+    }
+
+    private List<DetectedFace> recognizeGroup(Mat img, String lecture, long mark) throws IOException, OrtException {
+        if (img == null) return Collections.emptyList();
+
+        List<Rect> boxes;
+        FrameGate.Verdict[] verdicts;
+        List<Integer> embedded;
+        float[][] embs = null;
+        // Not sampled: a group photo embeds many faces in one request
+        try (InferenceAdmission.Permit permit = admission.acquire(InferenceAdmission.Priority.RECOGNITION)) {
+            mark = metrics.stage(RecognitionMetrics.GROUP, "admit", mark);
+            List<Float> scores = new ArrayList<>();
+            boxes = detectFaces(img, scores);
+            mark = metrics.stage(RecognitionMetrics.GROUP, "detect", mark);
+            if (boxes.isEmpty()) return Collections.emptyList();
+
+            // Only faces that pass the quality gate are embedded; the rest keep their verdict
+            verdicts = new FrameGate.Verdict[boxes.size()];
+            embedded = new ArrayList<>(boxes.size());
+            List<Mat> crops = new ArrayList<>(boxes.size());
+            for (int i = 0; i < boxes.size(); i++) {
+                verdicts[i] = frameGate.checkFace(boxes.get(i), scores.get(i));
+                if (verdicts[i] != FrameGate.Verdict.PASS) continue;
+                embedded.add(i);
+                crops.add(NativeMemory.crop(img, boxes.get(i)));
+            }
+            if (!crops.isEmpty()) {
+                embs = getFaceEmbeddings(crops);
+                mark = metrics.stage(RecognitionMetrics.GROUP, "embed", mark);
             }
         }
 
-        return bestRect == null ? null : new Mat(img, bestRect).clone();
+        FaceMatch[] matches = new FaceMatch[boxes.size()];
+        if (embs != null) {
+            FaceMatch[] found = matchAll(embs, lecture);
+            metrics.stage(RecognitionMetrics.GROUP, "match", mark);
+            for (int j = 0; j < found.length; j++) matches[embedded.get(j)] = found[j];
+        }
+
+        Map<String, Integer> winner = new HashMap<>();
+        for (int i = 0; i < matches.length; i++) {
+            FaceMatch m = matches[i];
+            if (m == null || m.getSimilarity() <= MATCH_THRESHOLD) continue;
+            Integer prev = winner.get(m.getRollNo());
+            if (prev == null || matches[prev].getSimilarity() < m.getSimilarity()) winner.put(m.getRollNo(), i);
+        }
+
+        List<DetectedFace> faces = new ArrayList<>(boxes.size());
+        for (int i = 0; i < boxes.size(); i++) {
+            Rect r = boxes.get(i);
+            FaceMatch m = matches[i];
+            boolean recognized = m != null && Integer.valueOf(i).equals(winner.get(m.getRollNo()));
+            String name = recognized ? studentNames.get(m.getRollNo()) : null;
+
+            if (verdicts[i] != FrameGate.Verdict.PASS) {
+                faces.add(new DetectedFace(r.x(), r.y(), r.width(), r.height(), verdicts[i].message(), null,
+                        0.0, verdicts[i].status()));
+            } else if (recognized && name != null) {
+                logRecognition(m.getRollNo(), name, lecture, m.getSimilarity());
+                faces.add(new DetectedFace(r.x(), r.y(), r.width(), r.height(), name, m.getRollNo(),
+                        m.getSimilarity(), "success"));
+            } else if (recognized) {
+                faces.add(new DetectedFace(r.x(), r.y(), r.width(), r.height(), "Unregistered name", m.getRollNo(),
+                        m.getSimilarity(), "warning"));
+            } else {
+                faces.add(new DetectedFace(r.x(), r.y(), r.width(), r.height(), "Unknown", null,
+                        m == null ? 0.0 : m.getSimilarity(), "unknown"));
+            }
+        }
+        return faces;
+    }
+
+    /* ---------------- RECOGNIZE STREAM ---------------- */
+    /**
+     * One frame of a live stream. Detection runs on every frame, but ArcFace only
+     * runs (as one batch) for the tracks the tracker is not yet sure about, so a
+     * static scene costs a detection pass and no embeddings. A recognition is
+     * logged once, when its track is confirmed.
+     *
+     * Frames the gate rejects skip detection entirely: an unchanged frame reports
+     * the tracks as they were, any other rejection reports no faces.
+     */
+    public FaceTracker.Frame recognizeFrame(ByteBuffer frame, FaceTracker tracker, String lecture, String clientId)
+            throws IOException, OrtException {
+        long t0 = System.nanoTime();
+        String outcome = "error";
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = imageDecoder.decode(frame);
+            FaceTracker.Frame result = recognizeFrame(img, tracker, lecture, clientId,
+                    metrics.stage(RecognitionMetrics.FRAME, "decode", t0));
+            outcome = result.getGate() != FrameGate.Verdict.PASS ? result.getGate().status()
+                    : result.getTracks().isEmpty() ? "no_face" : "tracked";
+            return result;
+        } catch (InferenceAdmission.RejectedException e) {
+            outcome = "shed";
+            throw e;
+        } finally {
+            metrics.request(RecognitionMetrics.FRAME, outcome, t0);
+        }
+    }
+
+    private FaceTracker.Frame recognizeFrame(Mat img, FaceTracker tracker, String lecture, String clientId, long mark)
+            throws IOException, OrtException {
+        if (img == null) return new FaceTracker.Frame(FrameGate.Verdict.PASS, tracker.update(Collections.emptyList()));
+
+        FrameGate.Verdict verdict = frameGate.checkFrame(clientId, img);
+        mark = metrics.stage(RecognitionMetrics.FRAME, "gate", mark);
+        if (verdict == FrameGate.Verdict.UNCHANGED) return new FaceTracker.Frame(verdict, tracker.tracks());
+        if (verdict != FrameGate.Verdict.PASS) return new FaceTracker.Frame(verdict, Collections.emptyList());
+
+        List<FaceTracker.Track> tracks;
+        List<FaceTracker.Track> pending = new ArrayList<>();
+        float[][] embs;
+        try (InferenceAdmission.Permit permit = admission.acquire(InferenceAdmission.Priority.RECOGNITION)) {
+            mark = metrics.stage(RecognitionMetrics.FRAME, "admit", mark);
+            List<Float> scores = new ArrayList<>();
+            List<Rect> boxes = detectFaces(img, scores);
+            mark = metrics.stage(RecognitionMetrics.FRAME, "detect", mark);
+            tracks = tracker.update(boxes);
+
+            List<Mat> crops = new ArrayList<>();
+            for (int i = 0; i < tracks.size(); i++) {
+                FaceTracker.Track t = tracks.get(i);
+                t.setGate(frameGate.checkFace(boxes.get(i), scores.get(i)));
+                if (t.getGate() != FrameGate.Verdict.PASS || !tracker.needsEmbedding(t)) continue;
+                pending.add(t);
+                crops.add(NativeMemory.crop(img, boxes.get(i)));
+            }
+            if (crops.isEmpty()) return new FaceTracker.Frame(verdict, tracks);
+
+            embs = getFaceEmbeddings(crops);
+            mark = metrics.stage(RecognitionMetrics.FRAME, "embed", mark);
+            permit.sample();
+        }
+        FaceTracker.Frame result = new FaceTracker.Frame(verdict, tracks);
+        FaceMatch[] matches = matchAll(embs, lecture);
+        metrics.stage(RecognitionMetrics.FRAME, "match", mark);
+        for (int i = 0; i < pending.size(); i++) {
+            FaceTracker.Track t = pending.get(i);
+            FaceMatch m = matches[i];
+            boolean matched = m != null && m.getSimilarity() > MATCH_THRESHOLD;
+            String rollNo = matched ? m.getRollNo() : null;
+            if (tracker.observe(t, rollNo, matched ? studentNames.get(rollNo) : null, matched ? m.getSimilarity() : 0.0)
+                    && t.getName() != null) {
+                logRecognition(t.getRollNo(), t.getName(), lecture, t.getSimilarity());
+            }
+        }
+        return result;
+    }
+
+    /** Forgets a client's reference frame, e.g. when its stream closes. */
+    public void releaseClient(String clientId) {
+        frameGate.forget(clientId);
+    }
+
+    private void logRecognition(String rollNo, String name, String lecture, double similarity) {
+        recognitionLogs.log(rollNo, name, lecture, similarity);
+    }
+
+    /* ---------------- FACE DETECTION ---------------- */
+    private Mat detectSingleFace(Mat img) throws IOException {
+        if (img == null) return null;
+
+        List<Rect> boxes = detectFaces(img);
+        return boxes.isEmpty() ? null : NativeMemory.crop(img, boxes.get(0));
+    }
+
+    private List<Rect> detectFaces(Mat img) throws IOException {
+        return detectFaces(img, null);
+    }
+
+    /**
+     * All faces above the detection threshold after NMS, highest score first, in image
+     * pixels. When scores is non-null it receives each box's detector score, in order.
+     */
+    private List<Rect> detectFaces(Mat img, List<Float> scores) throws IOException {
+        RetinaFaceDetectorPool.Detector detector;
+        try {
+            detector = detectorPool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a face detector");
+        }
+
+        try {
+            // Outputs belong to the borrowed detector, so decode before handing it back
+            RetinaFaceDecoder.Detections d = retinaDecoder.decode(detector.forward(img), img.cols(), img.rows());
+            List<Rect> boxes = new ArrayList<>(d.count());
+            for (int i = 0; i < d.count(); i++) {
+                Rect box = d.rect(i, img.cols(), img.rows());
+                if (box == null) continue;
+                boxes.add(box);
+                if (scores != null) scores.add(d.score(i));
+            }
+            return boxes;
+        } finally {
+            detectorPool.release(detector);
+        }
     }
 
     /* ---------------- EMBEDDING ---------------- */
+    /** Single face; coalesced with concurrent callers into one ArcFace batch when batching is on. */
     private float[] getFaceEmbedding(Mat face) throws OrtException {
-        Mat resized = new Mat();
-        opencv_imgproc.resize(face, resized, new Size(112, 112));
-        Mat rgb = new Mat();
-        opencv_imgproc.cvtColor(resized, rgb, opencv_imgproc.COLOR_BGR2RGB);
-
-        UByteIndexer idx = rgb.createIndexer();
-        float[] chw = new float[3 * 112 * 112];
-        int p = 0;
-        for (int c = 0; c < 3; c++)
-            for (int y = 0; y < 112; y++)
-                for (int x = 0; x < 112; x++)
-                    chw[p++] = (idx.get(y, x, c) - 127.5f) / 127.5f;
-        idx.release();
-
-        FloatBuffer fb = ByteBuffer.allocateDirect(chw.length * 4)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        fb.put(chw).rewind();
-
-        try (OnnxTensor tensor = OnnxTensor.createTensor(env, fb, new long[]{1, 3, 112, 112});
-             OrtSession.Result res = arcfaceSession.run(Collections.singletonMap(arcfaceInputName, tensor))) {
-            float[] emb = ((float[][]) res.get(0).getValue())[0];
-            return normalize(emb);
-        }
+        if (embeddingBatcher != null) return embeddingBatcher.embed(face);
+        return getFaceEmbeddings(Collections.singletonList(face))[0];
+    }
+
+    /** Embeds all faces in [N,3,112,112] ArcFace runs over reused workspace buffers. */
+    private float[][] getFaceEmbeddings(List<Mat> faces) throws OrtException {
+        return embedder.embed(faces);
     }
 
     /* ---------------- MATCHING ---------------- */
-    private MatchResult findBestMatchWithScore(float[] emb) {
-        String best = null;
-        double bestSim = -1;
-        for (var e : registeredEmbeddings.entrySet()) {
-            double sim = cosine(emb, e.getValue());
-            if (sim > bestSim) { bestSim = sim; best = e.getKey(); }
-        }
-        return best != null ? new MatchResult(best, bestSim) : null;
+    // Index rows and query are both L2-normalized, so the dot product is the cosine
+    private FaceMatch findBestMatchWithScore(float[] emb, String lecture) {
+        return matchAll(new float[][]{emb}, lecture)[0];
     }
 
-    private double cosine(float[] a, float[] b) {
-        double dot=0, na=0, nb=0;
-        for (int i=0;i<a.length;i++){ dot+=a[i]*b[i]; na+=a[i]*a[i]; nb+=b[i]*b[i]; }
-        return dot / (Math.sqrt(na)*Math.sqrt(nb)+1e-6);
+    /**
+     * Best match per embedding. A lecture with a roster is searched in its own
+     * partition (cost proportional to class size); with fallback-global, faces
+     * without a match there are retried against the whole gallery.
+     */
+    private FaceMatch[] matchAll(float[][] embs, String lecture) {
+        FaceIndex partition = rosterService.partition(lecture);
+        if (partition == null) return faceIndex.bestAll(embs);
+
+        FaceMatch[] matches = partition.bestAll(embs);
+        if (!rosterFallbackGlobal) return matches;
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] == null || matches[i].getSimilarity() <= MATCH_THRESHOLD) {
+                FaceMatch global = faceIndex.best(embs[i]);
+                if (global != null) matches[i] = global;
+            }
+        }
+        return matches;
     }
 
     private float[] normalize(float[] v) {
@@ -243,50 +618,50 @@ public class FaceRecognitionService {
         return v;
     }
 
-    /* ---------------- UTILS ---------------- */
-    public File convert(MultipartFile file) throws IOException {
-        File f = File.createTempFile("upload-", ".jpg");
-        file.transferTo(f);
-        return f;
+    /* ---------------- STATS ---------------- */
+    public Map<String, Object> getInferenceStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("arcfaceBatching", embeddingBatcher == null ? Map.of("enabled", false) : embeddingBatcher.stats());
+        stats.put("arcfaceWorkspaces", embedder.stats());
+        stats.put("models", modelRegistry.stats());
+        stats.put("detectorPool", Map.of("size", detectorPool.size(), "available", detectorPool.available()));
+        stats.put("frameGate", frameGate.stats());
+        stats.put("gallerySize", faceIndex.size());
+        stats.put("rosters", rosterService.stats());
+        stats.put("recognitionLogs", recognitionLogs.stats());
+        stats.put("nativeMemory", NativeMemory.stats());
+        return stats;
     }
 
-    private List<float[]> generateAnchors(int w, int h) {
-        int[] steps = {8,16,32};
-        float[][] minSizes = {{16,32},{64,128},{256,512}};
-        List<float[]> anchors = new ArrayList<>();
-        for (int i=0;i<steps.length;i++){
-            int fmW=(int)Math.ceil((float)w/steps[i]);
-            int fmH=(int)Math.ceil((float)h/steps[i]);
-            for(int y=0;y<fmH;y++) for(int x=0;x<fmW;x++)
-                for(float s:minSizes[i])
-                    anchors.add(new float[]{
-                            (x+0.5f)*steps[i]/(float)w,
-                            (y+0.5f)*steps[i]/(float)h,
-                            s/(float)w,
-                            s/(float)h
-                    });
-        }
-        return anchors;
+    /**
+     * Native memory: what JavaCPP tracks, process RSS, and the parts we know the
+     * size of (ArcFace workspaces, resident growth when the ORT sessions loaded).
+     * Steady growth of untrackedNativeBytes under constant load points at ORT or OpenCV.
+     */
+    public Map<String, Object> getNativeMemoryStats() {
+        Map<String, Object> stats = NativeMemory.stats();
+        stats.put("arcfaceWorkspaceBytes", embedder.stats().get("nativeBytes"));
+        stats.put("ortSessionResidentBytes", modelRegistry.residentDeltaBytes());
+        return stats;
     }
 
     /* ---------------- LOGS ---------------- */
-    public List<Map<String,Object>> getRecognitionLogs() {
-        return recognitionLogs;
+    public RecognitionLogPage getRecognitionLogs(RecognitionLogQuery query) {
+        return recognitionLogs.getPage(query);
     }
 
     /* ---------------- DEBUG ---------------- */
     public String testDetectOnly(MultipartFile file) throws IOException {
-        File conv = convert(file);
-        Mat face = detectSingleFace(file);
-        if (face==null) return "❌ No face detected";
-        String path = conv.getParent()+"/cropped.jpg";
-        opencv_imgcodecs.imwrite(path, face);
-        return "✅ Cropped face saved: "+path;
-    }
-
-    /* ---------------- Helper ---------------- */
-    private static class MatchResult {
-        String rollNo; double similarity;
-        MatchResult(String r,double s){rollNo=r;similarity=s;}
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = imageDecoder.decode(file);
+            Mat face;
+            try (InferenceAdmission.Permit permit = admission.acquire(InferenceAdmission.Priority.DEBUG)) {
+                face = detectSingleFace(img);
+            }
+            if (face==null) return "❌ No face detected";
+            String path = new File(System.getProperty("java.io.tmpdir"), "cropped.jpg").getAbsolutePath();
+            opencv_imgcodecs.imwrite(path, face);
+            return "✅ Cropped face saved: "+path;
+        }
     }
 }
@@ -0,0 +1,207 @@
+package com.example.attendancesystem.service;
+
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-stream face tracker. Each frame's detections are associated with the
+ * previous frame's tracks by IoU (greedy, best overlap first), so a student who
+ * stays in view keeps one track and one identity.
+ *
+ * A track asks for an ArcFace embedding when it is new, while its identity is
+ * still uncertain, and then only every refreshFrames frames as a guard against
+ * identity swaps. A track is confirmed once confirmHits consecutive embeddings
+ * agree; a face that never matches settles as unknown after unknownAttempts.
+ *
+ * Not thread-safe: one tracker per stream, fed one frame at a time.
+ */
+public class FaceTracker {
+
+    private final double iouThreshold;
+    private final int confirmHits;
+    private final int unknownAttempts;
+    private final int refreshFrames;
+    private final int maxMissed;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private int nextId = 1;
+    private long frame;
+    private long embeddings;
+
+    public FaceTracker(double iouThreshold, int confirmHits, int unknownAttempts, int refreshFrames, int maxMissed) {
+        this.iouThreshold = iouThreshold;
+        this.confirmHits = Math.max(1, confirmHits);
+        this.unknownAttempts = Math.max(1, unknownAttempts);
+        this.refreshFrames = Math.max(1, refreshFrames);
+        this.maxMissed = Math.max(0, maxMissed);
+    }
+
+    /**
+     * Starts a new frame: returns one track per box, in box order. Unmatched boxes
+     * open new tracks; tracks missing for more than maxMissed frames are dropped.
+     */
+    public List<Track> update(List<Rect> boxes) {
+        frame++;
+        int n = boxes.size();
+        Track[] assigned = new Track[n];
+        boolean[] taken = new boolean[tracks.size()];
+
+        // Greedy association: repeatedly take the best remaining (track, box) overlap
+        while (true) {
+            double best = iouThreshold;
+            int bestTrack = -1, bestBox = -1;
+            for (int t = 0; t < tracks.size(); t++) {
+                if (taken[t]) continue;
+                Track tr = tracks.get(t);
+                for (int b = 0; b < n; b++) {
+                    if (assigned[b] != null) continue;
+                    double iou = iou(tr, boxes.get(b));
+                    if (iou > best) {
+                        best = iou;
+                        bestTrack = t;
+                        bestBox = b;
+                    }
+                }
+            }
+            if (bestTrack < 0) break;
+            taken[bestTrack] = true;
+            assigned[bestBox] = tracks.get(bestTrack);
+        }
+
+        for (int t = tracks.size() - 1; t >= 0; t--) {
+            if (!taken[t] && ++tracks.get(t).missed > maxMissed) tracks.remove(t);
+        }
+
+        List<Track> out = new ArrayList<>(n);
+        for (int b = 0; b < n; b++) {
+            Track tr = assigned[b];
+            if (tr == null) {
+                tr = new Track(nextId++);
+                tracks.add(tr);
+            }
+            tr.moveTo(boxes.get(b));
+            tr.missed = 0;
+            out.add(tr);
+        }
+        return out;
+    }
+
+    /** Whether this track's crop should go through ArcFace on the current frame. */
+    public boolean needsEmbedding(Track t) {
+        return t.attempts == 0 || !isSettled(t) || frame - t.lastEmbeddedFrame >= refreshFrames;
+    }
+
+    /**
+     * Records an embedding result for a track (rollNo null = no gallery match above
+     * threshold). Returns true when this result confirms the track's identity.
+     */
+    public boolean observe(Track t, String rollNo, String name, double similarity) {
+        embeddings++;
+        t.attempts++;
+        t.lastEmbeddedFrame = frame;
+        boolean wasConfirmed = isConfirmed(t);
+
+        if (rollNo != null && rollNo.equals(t.rollNo)) {
+            t.hits++;
+            t.similarity = similarity;
+            t.name = name;
+        } else if (wasConfirmed && t.hits > 1) {
+            t.hits--; // one disagreeing frame (blur, head turn) does not drop a confirmed identity
+        } else {
+            t.rollNo = rollNo;
+            t.name = name;
+            t.similarity = similarity;
+            t.hits = rollNo == null ? 0 : 1;
+            t.announced = false;
+        }
+        return !wasConfirmed && isConfirmed(t);
+    }
+
+    public boolean isConfirmed(Track t) {
+        return t.rollNo != null && t.hits >= confirmHits;
+    }
+
+    private boolean isSettled(Track t) {
+        return isConfirmed(t) || (t.rollNo == null && t.attempts >= unknownAttempts);
+    }
+
+    public List<Track> tracks() {
+        return Collections.unmodifiableList(tracks);
+    }
+
+    public long frames() {
+        return frame;
+    }
+
+    public long embeddings() {
+        return embeddings;
+    }
+
+    private static double iou(Track t, Rect r) {
+        int ix = Math.min(t.x + t.width, r.x() + r.width()) - Math.max(t.x, r.x());
+        int iy = Math.min(t.y + t.height, r.y() + r.height()) - Math.max(t.y, r.y());
+        if (ix <= 0 || iy <= 0) return 0;
+        double inter = (double) ix * iy;
+        return inter / ((double) t.width * t.height + (double) r.width() * r.height() - inter);
+    }
+
+    /* ---------------- Helper ---------------- */
+    /** Outcome of one streamed frame: the gate verdict and the tracks in view. */
+    public static final class Frame {
+        private final FrameGate.Verdict gate;
+        private final List<Track> tracks;
+
+        public Frame(FrameGate.Verdict gate, List<Track> tracks) {
+            this.gate = gate;
+            this.tracks = tracks;
+        }
+
+        public FrameGate.Verdict getGate() { return gate; }
+        public List<Track> getTracks() { return tracks; }
+    }
+
+    public static final class Track {
+        private final int id;
+        private int x, y, width, height;
+        private String rollNo;
+        private String name;
+        private double similarity;
+        private int hits;
+        private int attempts;
+        private long lastEmbeddedFrame;
+        private int missed;
+        private boolean announced;
+        private FrameGate.Verdict gate = FrameGate.Verdict.PASS;
+
+        Track(int id) {
+            this.id = id;
+        }
+
+        private void moveTo(Rect r) {
+            x = r.x();
+            y = r.y();
+            width = r.width();
+            height = r.height();
+        }
+
+        public int getId() { return id; }
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public String getRollNo() { return rollNo; }
+        public String getName() { return name; }
+        public double getSimilarity() { return similarity; }
+
+        /** Quality verdict of this track's face on the latest frame; PASS when it was fit to embed. */
+        public FrameGate.Verdict getGate() { return gate; }
+        void setGate(FrameGate.Verdict gate) { this.gate = gate; }
+
+        /** True once the confirmed identity has been acted on (e.g. attendance marked). */
+        public boolean isAnnounced() { return announced; }
+        public void setAnnounced(boolean announced) { this.announced = announced; }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.attendancesystem.service;
+
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap checks that keep useless frames away from RetinaFace and ArcFace.
+ *
+ * Before detection, a frame is shrunk to at most 320 px wide and grayscale. From
+ * that we read the mean brightness and the Laplacian variance (blur). A 64x48
+ * thumbnail of it is compared with the last frame of the same client that passed.
+ * A frame that barely differs is "unchanged": the client already has the result.
+ * After detection, faces that are too small or scored too low are not embedded.
+ *
+ * Each rejection has its own status, and every rejection counts as a saved
+ * detection or embedding.
+ */
+public class FrameGate {
+
+    public enum Verdict {
+        PASS("pass", "OK"),
+        UNCHANGED("unchanged", "Frame unchanged"),
+        TOO_DARK("too_dark", "Too dark"),
+        TOO_BRIGHT("too_bright", "Too bright"),
+        BLURRY("blurry", "Too blurry"),
+        FACE_TOO_SMALL("face_too_small", "Face too small, move closer"),
+        LOW_CONFIDENCE("low_confidence", "Face not clear");
+
+        private final String status;
+        private final String message;
+
+        Verdict(String status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        public String status() {
+            return status;
+        }
+
+        public String message() {
+            return message;
+        }
+    }
+
+    private static final int ANALYSIS_WIDTH = 320;
+    private static final int THUMB_WIDTH = 64;
+    private static final int THUMB_HEIGHT = 48;
+    private static final long CLIENT_IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int SWEEP_EVERY = 1024;
+
+    private final double minMotion;
+    private final double minBrightness;
+    private final double maxBrightness;
+    private final double minSharpness;
+    private final int minFacePixels;
+    private final float minFaceScore;
+
+    private final Map<String, ClientState> clients = new ConcurrentHashMap<>();
+    private final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+    private final LongAdder[] verdicts = new LongAdder[Verdict.values().length];
+    private final LongAdder framesChecked = new LongAdder();
+    private final LongAdder facesChecked = new LongAdder();
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * @param minMotion     mean absolute thumbnail difference (gray levels) below which a frame is unchanged
+     * @param minSharpness  Laplacian variance below which a frame is blurry
+     * @param minFacePixels shortest face side, in source pixels, worth embedding
+     */
+    public FrameGate(double minMotion, double minBrightness, double maxBrightness, double minSharpness,
+                     int minFacePixels, float minFaceScore) {
+        this.minMotion = minMotion;
+        this.minBrightness = minBrightness;
+        this.maxBrightness = maxBrightness;
+        this.minSharpness = minSharpness;
+        this.minFacePixels = minFacePixels;
+        this.minFaceScore = minFaceScore;
+        for (int i = 0; i < verdicts.length; i++) verdicts[i] = new LongAdder();
+    }
+
+    /**
+     * Pre-detection check. clientId may be null (no motion check); otherwise a
+     * passing frame becomes that client's new reference.
+     */
+    public Verdict checkFrame(String clientId, Mat img) {
+        framesChecked.increment();
+        if (calls.incrementAndGet() % SWEEP_EVERY == 0) sweepIdleClients();
+
+        Workspace w = workspace.get();
+        double scale = Math.min(1.0, (double) ANALYSIS_WIDTH / img.cols());
+        w.analysisSize.width(Math.max(1, (int) Math.round(img.cols() * scale)));
+        w.analysisSize.height(Math.max(1, (int) Math.round(img.rows() * scale)));
+        opencv_imgproc.resize(img, w.small, w.analysisSize, 0, 0, opencv_imgproc.INTER_AREA);
+        if (w.small.channels() == 1) w.small.copyTo(w.gray);
+        else opencv_imgproc.cvtColor(w.small, w.gray,
+                w.small.channels() == 4 ? opencv_imgproc.COLOR_BGRA2GRAY : opencv_imgproc.COLOR_BGR2GRAY);
+
+        ClientState client = null;
+        if (clientId != null) {
+            opencv_imgproc.resize(w.gray, w.thumb, w.thumbSize, 0, 0, opencv_imgproc.INTER_AREA);
+            w.thumb.data().get(w.thumbPixels);
+            client = clients.computeIfAbsent(clientId, k -> new ClientState());
+            synchronized (client) {
+                client.lastSeen = System.nanoTime();
+                if (client.reference != null && meanAbsDiff(client.reference, w.thumbPixels) < minMotion)
+                    return count(Verdict.UNCHANGED);
+            }
+        }
+
+        double brightness;
+        try (Scalar m = opencv_core.mean(w.gray)) { // returned by value: a new native Scalar per frame
+            brightness = m.get(0);
+        }
+        if (brightness < minBrightness) return count(Verdict.TOO_DARK);
+        if (brightness > maxBrightness) return count(Verdict.TOO_BRIGHT);
+
+        opencv_imgproc.Laplacian(w.gray, w.laplacian, opencv_core.CV_64F);
+        opencv_core.meanStdDev(w.laplacian, w.mean, w.stddev);
+        double sd = w.stddev.data().getDouble();
+        if (sd * sd < minSharpness) return count(Verdict.BLURRY);
+
+        if (client != null) {
+            synchronized (client) {
+                if (client.reference == null) client.reference = new byte[w.thumbPixels.length];
+                System.arraycopy(w.thumbPixels, 0, client.reference, 0, w.thumbPixels.length);
+            }
+        }
+        return count(Verdict.PASS);
+    }
+
+    /** Post-detection check of one face box and its detector score. */
+    public Verdict checkFace(Rect face, float score) {
+        facesChecked.increment();
+        if (Math.min(face.width(), face.height()) < minFacePixels) return count(Verdict.FACE_TOO_SMALL);
+        if (score < minFaceScore) return count(Verdict.LOW_CONFIDENCE);
+        return Verdict.PASS;
+    }
+
+    /** Drops a client's reference frame (e.g. when its stream closes). */
+    public void forget(String clientId) {
+        if (clientId != null) clients.remove(clientId);
+    }
+
+    private Verdict count(Verdict v) {
+        verdicts[v.ordinal()].increment();
+        return v;
+    }
+
+    private void sweepIdleClients() {
+        long cutoff = System.nanoTime() - CLIENT_IDLE_NANOS;
+        clients.values().removeIf(c -> c.lastSeen - cutoff < 0);
+    }
+
+    private static double meanAbsDiff(byte[] a, byte[] b) {
+        long sum = 0;
+        for (int i = 0; i < a.length; i++) sum += Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+        return sum / (double) a.length;
+    }
+
+    /** Frames and faces checked, rejections per status, and the inference runs they saved. */
+    public Map<String, Object> stats() {
+        Map<String, Long> rejected = new LinkedHashMap<>();
+        long frameRejects = 0, faceRejects = 0;
+        for (Verdict v : Verdict.values()) {
+            if (v == Verdict.PASS) continue;
+            long n = verdicts[v.ordinal()].sum();
+            rejected.put(v.status(), n);
+            if (v == Verdict.FACE_TOO_SMALL || v == Verdict.LOW_CONFIDENCE) faceRejects += n;
+            else frameRejects += n;
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("framesChecked", framesChecked.sum());
+        stats.put("facesChecked", facesChecked.sum());
+        stats.put("rejected", rejected);
+        stats.put("detectionsSaved", frameRejects);
+        stats.put("embeddingsSaved", faceRejects);
+        stats.put("trackedClients", clients.size());
+        return stats;
+    }
+
+    /* ---------------- Helper ---------------- */
+    private static final class ClientState {
+        byte[] reference;
+        volatile long lastSeen;
+    }
+
+    /**
+     * Per-thread scratch Mats; sized once, reused for every frame. Usually first
+     * created inside a request's PointerScope, hence kept out of it.
+     */
+    private static final class Workspace {
+        final Size analysisSize = NativeMemory.keep(new Size(ANALYSIS_WIDTH, ANALYSIS_WIDTH));
+        final Size thumbSize = NativeMemory.keep(new Size(THUMB_WIDTH, THUMB_HEIGHT));
+        final Mat small = NativeMemory.keep(new Mat());
+        final Mat gray = NativeMemory.keep(new Mat());
+        final Mat thumb = NativeMemory.keep(new Mat());
+        final Mat laplacian = NativeMemory.keep(new Mat());
+        final Mat mean = NativeMemory.keep(new Mat());
+        final Mat stddev = NativeMemory.keep(new Mat());
+        final byte[] thumbPixels = new byte[THUMB_WIDTH * THUMB_HEIGHT];
+    }
+}
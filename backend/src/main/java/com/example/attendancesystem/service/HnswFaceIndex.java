@@ -0,0 +1,467 @@
+package com.example.attendancesystem.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest-neighbour index: a Hierarchical Navigable Small World graph
+ * (Malkov & Yashunin) over L2-normalized embeddings scored by dot product.
+ *
+ * Searches share a read lock; inserts and deletes take the write lock. Deletes
+ * only tombstone the node so the graph stays navigable, and the graph is rebuilt
+ * from live vectors once tombstones pass {@link #REBUILD_FRACTION} of all nodes.
+ */
+public class HnswFaceIndex implements FaceIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final double REBUILD_FRACTION = 0.25;
+    private static final int MIN_REBUILD_TOMBSTONES = 64;
+
+    private final int dim;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMult;
+    private volatile int efSearch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+    private final Map<String, Integer> nodeOf = new HashMap<>();
+
+    private float[] vectors;
+    private String[] labels;
+    private boolean[] deleted;
+    private int[][][] links;   // links[node][level] = {count, n1, n2, ...}
+    private int count;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswFaceIndex(int dim, int m, int efConstruction, int efSearch) {
+        if (m < 2) throw new IllegalArgumentException("M must be >= 2");
+        this.dim = dim;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMult = 1.0 / Math.log(m);
+        reset(INITIAL_CAPACITY);
+    }
+
+    public int getEfSearch() { return efSearch; }
+
+    /** efSearch can be tuned at runtime; it only affects subsequent searches. */
+    public void setEfSearch(int efSearch) { this.efSearch = efSearch; }
+
+    /* ---------------- WRITES ---------------- */
+
+    @Override
+    public void put(String rollNo, float[] embedding) {
+        checkDim(embedding);
+        lock.writeLock().lock();
+        try {
+            Integer old = nodeOf.remove(rollNo);
+            if (old != null) tombstone(old);
+            insert(rollNo, embedding);
+            maybeRebuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String rollNo) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeOf.remove(rollNo);
+            if (node == null) return false;
+            tombstone(node);
+            maybeRebuild();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(INITIAL_CAPACITY);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reset(int capacity) {
+        vectors = new float[capacity * dim];
+        labels = new String[capacity];
+        deleted = new boolean[capacity];
+        links = new int[capacity][][];
+        nodeOf.clear();
+        count = 0;
+        deletedCount = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+    }
+
+    private void tombstone(int node) {
+        deleted[node] = true;
+        deletedCount++;
+    }
+
+    private void maybeRebuild() {
+        if (deletedCount < MIN_REBUILD_TOMBSTONES || deletedCount < count * REBUILD_FRACTION) return;
+
+        int live = count - deletedCount;
+        String[] liveLabels = new String[live];
+        float[][] liveVectors = new float[live][];
+        for (int node = 0, i = 0; node < count; node++) {
+            if (deleted[node]) continue;
+            liveLabels[i] = labels[node];
+            liveVectors[i++] = Arrays.copyOfRange(vectors, node * dim, (node + 1) * dim);
+        }
+        reset(Math.max(INITIAL_CAPACITY, live));
+        for (int i = 0; i < live; i++) insert(liveLabels[i], liveVectors[i]);
+    }
+
+    private void insert(String label, float[] v) {
+        if (count == labels.length) grow();
+        int node = count++;
+        int off = node * dim;
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        float inv = (float) (1.0 / (Math.sqrt(norm) + 1e-6));
+        for (int i = 0; i < dim; i++) vectors[off + i] = v[i] * inv;
+        labels[node] = label;
+        nodeOf.put(label, node);
+
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMult);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) links[node][l] = new int[1 + (l == 0 ? maxM0 : m)];
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) ep = greedy(vectors, off, ep, l);
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            ScoreHeap w = searchLayer(vectors, off, ep, efConstruction, l, false);
+            int n = w.size;
+            int[] cand = new int[n];
+            float[] sims = new float[n];
+            w.drainDescending(cand, sims);
+            ep = cand[0];
+
+            int[] chosen = selectNeighbors(cand, sims, n, m);
+            int[] own = links[node][l];
+            own[0] = chosen.length;
+            System.arraycopy(chosen, 0, own, 1, chosen.length);
+            for (int e : chosen) connect(e, node, l);
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /** Adds node to e's neighbour list, shrinking it with the selection heuristic on overflow. */
+    private void connect(int e, int node, int level) {
+        int[] nb = links[e][level];
+        int max = level == 0 ? maxM0 : m;
+        if (nb[0] < max) {
+            nb[++nb[0]] = node;
+            return;
+        }
+
+        int n = nb[0] + 1;
+        int[] cand = new int[n];
+        float[] sims = new float[n];
+        for (int i = 0; i < n - 1; i++) {
+            cand[i] = nb[i + 1];
+            sims[i] = sim(vectors, e * dim, cand[i]);
+        }
+        cand[n - 1] = node;
+        sims[n - 1] = sim(vectors, e * dim, node);
+        sortDescending(cand, sims, n);
+
+        int[] chosen = selectNeighbors(cand, sims, n, max);
+        nb[0] = chosen.length;
+        System.arraycopy(chosen, 0, nb, 1, chosen.length);
+    }
+
+    /**
+     * Neighbour selection heuristic (paper, algorithm 4): keep a candidate only if it
+     * is closer to the base element than to every neighbour already kept, which
+     * spreads links across clusters instead of packing them into one.
+     */
+    private int[] selectNeighbors(int[] cand, float[] sims, int n, int max) {
+        int[] chosen = new int[Math.min(n, max)];
+        int c = 0;
+        for (int i = 0; i < n && c < chosen.length; i++) {
+            int e = cand[i];
+            boolean keep = true;
+            for (int j = 0; j < c && keep; j++) {
+                if (sim(vectors, e * dim, chosen[j]) > sims[i]) keep = false;
+            }
+            if (keep) chosen[c++] = e;
+        }
+        return c == chosen.length ? chosen : Arrays.copyOf(chosen, c);
+    }
+
+    private void grow() {
+        int capacity = labels.length * 2;
+        vectors = Arrays.copyOf(vectors, capacity * dim);
+        labels = Arrays.copyOf(labels, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    /* ---------------- READS ---------------- */
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        checkDim(query);
+        lock.readLock().lock();
+        try {
+            if (count - deletedCount == 0 || k <= 0) return Collections.emptyList();
+
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) ep = greedy(query, 0, ep, l);
+            ScoreHeap w = searchLayer(query, 0, ep, Math.max(efSearch, k), 0, true);
+
+            int n = w.size;
+            int[] nodes = new int[n];
+            float[] sims = new float[n];
+            w.drainDescending(nodes, sims);
+            List<FaceMatch> out = new ArrayList<>(Math.min(k, n));
+            for (int i = 0; i < n && i < k; i++) out.add(new FaceMatch(labels[nodes[i]], sims[i]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String rollNo) {
+        lock.readLock().lock();
+        try {
+            return nodeOf.containsKey(rollNo);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] get(String rollNo) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeOf.get(rollNo);
+            return node == null ? null : Arrays.copyOfRange(vectors, node * dim, (node + 1) * dim);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int greedy(float[] q, int qOff, int ep, int level) {
+        int cur = ep;
+        float curSim = sim(q, qOff, cur);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nb = links[cur][level];
+            for (int i = 1; i <= nb[0]; i++) {
+                float s = sim(q, qOff, nb[i]);
+                if (s > curSim) {
+                    curSim = s;
+                    cur = nb[i];
+                    changed = true;
+                }
+            }
+        }
+        return cur;
+    }
+
+    /** Beam search on one layer; returns up to ef results with the worst on top. */
+    private ScoreHeap searchLayer(float[] q, int qOff, int ep, int ef, int level, boolean liveOnly) {
+        Visited v = visited.get();
+        v.reset(count);
+        ScoreHeap candidates = new ScoreHeap(ef * 2, true);
+        ScoreHeap results = new ScoreHeap(ef + 1, false);
+
+        float s = sim(q, qOff, ep);
+        v.visit(ep);
+        candidates.push(ep, s);
+        if (!liveOnly || !deleted[ep]) results.push(ep, s);
+
+        while (candidates.size > 0) {
+            float cs = candidates.topScore();
+            int c = candidates.pop();
+            if (results.size >= ef && cs < results.topScore()) break;
+
+            int[] nb = links[c][level];
+            for (int i = 1; i <= nb[0]; i++) {
+                int e = nb[i];
+                if (!v.visit(e)) continue;
+                float es = sim(q, qOff, e);
+                if (results.size < ef || es > results.topScore()) {
+                    candidates.push(e, es);
+                    if (!liveOnly || !deleted[e]) {
+                        results.push(e, es);
+                        if (results.size > ef) results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private float sim(float[] q, int qOff, int node) {
+        float[] data = vectors;
+        int off = node * dim;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int upper = dim & ~3; i < upper; i += 4) {
+            s0 += q[qOff + i] * data[off + i];
+            s1 += q[qOff + i + 1] * data[off + i + 1];
+            s2 += q[qOff + i + 2] * data[off + i + 2];
+            s3 += q[qOff + i + 3] * data[off + i + 3];
+        }
+        for (; i < dim; i++) s0 += q[qOff + i] * data[off + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private void checkDim(float[] v) {
+        if (v.length != dim)
+            throw new IllegalArgumentException("Expected " + dim + "-d embedding, got " + v.length);
+    }
+
+    private static void sortDescending(int[] nodes, float[] sims, int n) {
+        for (int i = 1; i < n; i++) {
+            int node = nodes[i];
+            float s = sims[i];
+            int j = i - 1;
+            while (j >= 0 && sims[j] < s) {
+                nodes[j + 1] = nodes[j];
+                sims[j + 1] = sims[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            sims[j + 1] = s;
+        }
+    }
+
+    /* ---------------- Helper ---------------- */
+
+    /** Binary heap of (node, similarity); best-on-top or worst-on-top. */
+    private static final class ScoreHeap {
+        int[] nodes;
+        float[] scores;
+        int size;
+        final boolean bestOnTop;
+
+        ScoreHeap(int capacity, boolean bestOnTop) {
+            this.nodes = new int[Math.max(capacity, 4)];
+            this.scores = new float[nodes.length];
+            this.bestOnTop = bestOnTop;
+        }
+
+        private boolean above(float a, float b) {
+            return bestOnTop ? a > b : a < b;
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!above(score, scores[parent])) break;
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float last = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && above(scores[child + 1], scores[child])) child++;
+                if (!above(scores[child], last)) break;
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = last;
+            return top;
+        }
+
+        /** Empties a worst-on-top heap into arrays ordered best first. */
+        void drainDescending(int[] outNodes, float[] outScores) {
+            for (int i = size - 1; i >= 0; i--) {
+                outScores[i] = topScore();
+                outNodes[i] = pop();
+            }
+        }
+    }
+
+    /** Per-thread visited marks, reset in O(1) by bumping the epoch. */
+    private static final class Visited {
+        int[] marks = new int[0];
+        int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /** Returns true the first time a node is seen in the current search. */
+        boolean visit(int node) {
+            if (marks[node] == epoch) return false;
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
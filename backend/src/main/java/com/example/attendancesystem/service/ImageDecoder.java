@@ -0,0 +1,161 @@
+package com.example.attendancesystem.service;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Decodes uploaded images straight from memory: the body is read once into a
+ * native buffer and handed to imdecode, no temp files involved. That buffer is
+ * freed as soon as imdecode returns.
+ *
+ * Large JPEGs are decoded at 1/2, 1/4 or 1/8 scale by libjpeg itself (IMREAD_REDUCED_COLOR_*)
+ * when the header says the image is at least twice face.decode.max-side, which is far
+ * cheaper than decoding full size and resizing afterwards.
+ */
+@Component
+public class ImageDecoder {
+
+    @Value("${face.decode.max-side:1600}")
+    private int maxSide;
+
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxUpload;
+
+    /** The body is larger than spring.servlet.multipart.max-file-size; the controller answers 413. */
+    public static class ImageTooLargeException extends IOException {
+        public ImageTooLargeException(long max) {
+            super("Image larger than " + max + " bytes");
+        }
+    }
+
+    public ImageDecoder() {
+    }
+
+    /** Outside Spring (e.g. the GalleryBuilder CLI). */
+    public ImageDecoder(int maxSide) {
+        this.maxSide = maxSide;
+        this.maxUpload = DataSize.ofMegabytes(10);
+    }
+
+    public Mat decode(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return decode(in, file.getSize());
+        }
+    }
+
+    /**
+     * Decodes a BGR image from a stream of known length (-1 when unknown). Returns null if
+     * undecodable; throws {@link ImageTooLargeException} past the upload limit, before
+     * allocating anything for a declared length and without decoding a truncated body.
+     */
+    public Mat decode(InputStream in, long length) throws IOException {
+        try (BytePointer bytes = length >= 0 ? readFully(in, length) : readUnknown(in)) {
+            return decode(bytes);
+        }
+    }
+
+    /** Decodes an encoded image already in memory (e.g. a WebSocket frame); heap buffers are copied once. */
+    public Mat decode(ByteBuffer encodedBytes) {
+        if (!encodedBytes.hasRemaining()) return null;
+        if (encodedBytes.isDirect()) {
+            try (BytePointer bytes = new BytePointer(encodedBytes.slice())) {
+                return decode(bytes);
+            }
+        }
+        try (BytePointer bytes = new BytePointer(encodedBytes.remaining())) {
+            bytes.asByteBuffer().put(encodedBytes.duplicate());
+            return decode(bytes);
+        }
+    }
+
+    /**
+     * imdecode over native bytes (position 0 to limit). The encoded bytes are
+     * malloc'd by JavaCPP and freed by the caller's try-with-resources as soon as
+     * the image is decoded, rather than parked in a direct buffer until a GC.
+     */
+    private Mat decode(BytePointer bytes) {
+        long size = bytes.limit();
+        if (size <= 0) return null;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Image too large: " + size + " bytes");
+
+        int flags = reducedFlag(bytes.asByteBuffer());
+        Mat img;
+        try (Mat encoded = new Mat(1, (int) size, opencv_core.CV_8UC1, bytes)) {
+            img = opencv_imgcodecs.imdecode(encoded, flags);
+        }
+        if (img != null && img.empty()) {
+            img.close();
+            img = null;
+        }
+        return img;
+    }
+
+    private BytePointer readFully(InputStream in, long length) throws IOException {
+        long max = maxUpload.toBytes();
+        if (length > max) throw new ImageTooLargeException(max); // Content-Length is client-controlled
+        BytePointer bytes = new BytePointer(Math.max(1, length));
+        try {
+            ByteBuffer buf = bytes.asByteBuffer();
+            ReadableByteChannel ch = Channels.newChannel(in);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { /* keep reading */ }
+            bytes.limit(Math.min(length, buf.position()));
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            bytes.close();
+            throw e;
+        }
+    }
+
+    private BytePointer readUnknown(InputStream in) throws IOException {
+        long max = Math.min(Integer.MAX_VALUE - 1, maxUpload.toBytes());
+        byte[] data = in.readNBytes((int) max + 1);
+        if (data.length > max) throw new ImageTooLargeException(max);
+        BytePointer bytes = new BytePointer(Math.max(1, data.length));
+        bytes.put(data, 0, data.length);
+        bytes.limit(data.length);
+        return bytes;
+    }
+
+    /** Picks the largest libjpeg downscale that keeps the longer side at or above maxSide. */
+    private int reducedFlag(ByteBuffer jpeg) {
+        int longest = jpegLongestSide(jpeg);
+        if (longest <= 0) return opencv_imgcodecs.IMREAD_COLOR;
+        if (longest >= maxSide * 8) return opencv_imgcodecs.IMREAD_REDUCED_COLOR_8;
+        if (longest >= maxSide * 4) return opencv_imgcodecs.IMREAD_REDUCED_COLOR_4;
+        if (longest >= maxSide * 2) return opencv_imgcodecs.IMREAD_REDUCED_COLOR_2;
+        return opencv_imgcodecs.IMREAD_COLOR;
+    }
+
+    /** Longest side from the JPEG SOFn marker, or -1 when the buffer is not a JPEG. */
+    static int jpegLongestSide(ByteBuffer b) {
+        int n = b.limit();
+        if (n < 4 || (b.get(0) & 0xFF) != 0xFF || (b.get(1) & 0xFF) != 0xD8) return -1;
+        int i = 2;
+        while (i + 9 < n) {
+            if ((b.get(i) & 0xFF) != 0xFF) return -1;
+            int marker = b.get(i + 1) & 0xFF;
+            if (marker == 0xFF) { i++; continue; }
+            int segLen = ((b.get(i + 2) & 0xFF) << 8) | (b.get(i + 3) & 0xFF);
+            boolean sof = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (sof) {
+                int h = ((b.get(i + 5) & 0xFF) << 8) | (b.get(i + 6) & 0xFF);
+                int w = ((b.get(i + 7) & 0xFF) << 8) | (b.get(i + 8) & 0xFF);
+                return Math.max(w, h);
+            }
+            i += 2 + segLen;
+        }
+        return -1;
+    }
+}
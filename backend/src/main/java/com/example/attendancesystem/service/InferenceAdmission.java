@@ -0,0 +1,406 @@
+package com.example.attendancesystem.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for the inference pipeline (detection + ArcFace).
+ *
+ * At most {@code limit} requests run detection/ArcFace at once; the rest wait
+ * in a small bounded queue per priority class and are turned away (429 with
+ * Retry-After) when that queue is full or they have waited max-wait-ms. The
+ * service takes a permit only around the detection and embedding calls, so
+ * reading an upload, decoding it, the frame gate and writing the response never
+ * hold a slot.
+ * Classes, highest first: RECOGNITION (live scanning), ENROLLMENT (/register,
+ * bulk jobs), DEBUG (/detect-only). A freed slot goes to the highest class with
+ * waiters, and a class may not start while a higher one is waiting, so an
+ * enrollment burst cannot hold back recognition. ENROLLMENT and DEBUG are also
+ * capped at a share of the limit.
+ *
+ * The limit adapts to latency, AIMD style: every window-ms the mean recognition
+ * service time is compared with the lowest seen (the no-load latency). Above
+ * latency-tolerance times that, the limit shrinks by 10%; otherwise, if the
+ * window ran at the limit, it grows by one. The baseline drifts up slowly so it
+ * follows a model or hardware change. Only permits marked with
+ * {@link Permit#sample()} feed the estimate: the service marks recognitions
+ * that ran both RetinaFace and ArcFace on a frame. Gate rejections, frames
+ * without faces or with nothing to embed, group photos and /register (many
+ * embeddings per request) would skew the no-load latency either way.
+ */
+@Component
+public class InferenceAdmission implements MeterBinder {
+
+    public enum Priority {
+        RECOGNITION, ENROLLMENT, DEBUG;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** Held while a request runs inference; closing it frees the slot. */
+    public final class Permit implements AutoCloseable {
+        private final Priority priority;
+        private final long start = System.nanoTime();
+        private boolean sampled;
+        private boolean closed;
+
+        private Permit(Priority priority) {
+            this.priority = priority;
+        }
+
+        /** Counts this permit's hold time as a latency sample for the adaptive limit. */
+        public void sample() {
+            sampled = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(priority, sampled ? System.nanoTime() - start : -1);
+        }
+    }
+
+    /** Thrown when a request is shed; retryAfterSeconds goes into the Retry-After header. */
+    public static final class RejectedException extends RuntimeException {
+        private final Priority priority;
+        private final int retryAfterSeconds;
+
+        RejectedException(Priority priority, int retryAfterSeconds) {
+            super("Inference busy (" + priority.tag() + "), retry in " + retryAfterSeconds + " s");
+            this.priority = priority;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public Priority getPriority() { return priority; }
+        public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    private static final Priority[] CLASSES = Priority.values();
+    private static final int MIN_WINDOW_SAMPLES = 5;
+
+    // ✅ Concurrency limit (0 = from the core count)
+    @Value("${face.admission.enabled:true}")
+    private boolean enabled;
+    @Value("${face.admission.initial-limit:0}")
+    private int initialLimit;
+    @Value("${face.admission.min-limit:1}")
+    private int minLimit;
+    @Value("${face.admission.max-limit:0}")
+    private int maxLimit;
+    // ✅ Adaptation
+    @Value("${face.admission.window-ms:1000}")
+    private long windowMs;
+    @Value("${face.admission.latency-tolerance:2.0}")
+    private double latencyTolerance;
+    // ✅ Queues and shares per class
+    @Value("${face.admission.queue.recognition:32}")
+    private int recognitionQueue;
+    @Value("${face.admission.queue.enrollment:8}")
+    private int enrollmentQueue;
+    @Value("${face.admission.queue.debug:0}")
+    private int debugQueue;
+    @Value("${face.admission.max-wait-ms:2000}")
+    private long maxWaitMs;
+    @Value("${face.admission.enrollment-share:0.5}")
+    private double enrollmentShare;
+    @Value("${face.admission.debug-share:0.25}")
+    private double debugShare;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] turn = new Condition[CLASSES.length];
+    private final int[] inFlight = new int[CLASSES.length];   // guarded by lock
+    private final int[] queued = new int[CLASSES.length];     // guarded by lock
+    private final int[] background = new int[CLASSES.length]; // of queued, from acquireBlocking; guarded by lock
+    private final int[] queueLimit = new int[CLASSES.length];
+    private final LongAdder[] admitted = new LongAdder[CLASSES.length];
+    private final LongAdder[] rejected = new LongAdder[CLASSES.length];
+    private int running;                                      // guarded by lock
+    private volatile int limit;
+
+    // Current window (guarded by lock)
+    private long windowStart;
+    private long windowNanos;
+    private int windowSamples;
+    private int windowPeak;
+    private volatile double baselineMillis;   // lowest window mean, drifting up slowly
+    private volatile double lastWindowMillis;
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+
+    public InferenceAdmission() {
+        for (int i = 0; i < CLASSES.length; i++) {
+            turn[i] = lock.newCondition();
+            admitted[i] = new LongAdder();
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (maxLimit <= 0) maxLimit = 4 * cores;
+        minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        limit = clamp(initialLimit <= 0 ? cores : initialLimit);
+        queueLimit[Priority.RECOGNITION.ordinal()] = Math.max(0, recognitionQueue);
+        queueLimit[Priority.ENROLLMENT.ordinal()] = Math.max(0, enrollmentQueue);
+        queueLimit[Priority.DEBUG.ordinal()] = Math.max(0, debugQueue);
+        windowStart = System.nanoTime();
+        if (enabled) {
+            System.out.println("✅ Inference admission: limit " + limit + " (" + minLimit + ".." + maxLimit
+                    + "), queues " + recognitionQueue + "/" + enrollmentQueue + "/" + debugQueue);
+        }
+    }
+
+    /**
+     * Admits a request, waiting in its class queue for up to max-wait-ms.
+     * Throws {@link RejectedException} when the queue is full or the wait runs out.
+     */
+    public Permit acquire(Priority priority) {
+        if (!enabled) return new Permit(priority);
+        int c = priority.ordinal();
+        lock.lock();
+        try {
+            // Newcomers do not overtake requests already waiting in their class
+            if (queued[c] == 0 && canStart(c)) return admit(priority);
+            if (queued[c] - background[c] >= queueLimit[c] || maxWaitMs <= 0) throw reject(priority);
+
+            queued[c]++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (!canStart(c)) {
+                    if (remaining <= 0) throw reject(priority);
+                    try {
+                        remaining = turn[c].awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw reject(priority);
+                    }
+                }
+            } finally {
+                queued[c]--;
+                signalNext(); // a request giving up may unblock a lower class
+            }
+            return admit(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Early shed, before the request body is read: throws {@link RejectedException}
+     * when the class queue is already full, so the request could not get a permit
+     * later anyway. Takes nothing.
+     */
+    public void rejectIfFull(Priority priority) {
+        if (!enabled) return;
+        int c = priority.ordinal();
+        lock.lock();
+        try {
+            if (!canStart(c) && queued[c] - background[c] >= queueLimit[c]) throw reject(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admits background work (bulk enrollment), waiting as long as it takes. It
+     * still yields to higher classes and counts against its class share, but
+     * not against the request queue.
+     */
+    public Permit acquireBlocking(Priority priority) throws InterruptedException {
+        if (!enabled) return new Permit(priority);
+        int c = priority.ordinal();
+        lock.lockInterruptibly();
+        try {
+            queued[c]++;
+            background[c]++;
+            try {
+                while (!canStart(c)) turn[c].await();
+            } finally {
+                queued[c]--;
+                background[c]--;
+            }
+            return admit(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Free slot, under the class share, and nobody of a higher class waiting. */
+    private boolean canStart(int c) {
+        if (running >= limit) return false;
+        if (inFlight[c] >= share(c)) return false;
+        for (int h = 0; h < c; h++) {
+            if (queued[h] > 0) return false;
+        }
+        return true;
+    }
+
+    private int share(int c) {
+        int l = limit;
+        return switch (CLASSES[c]) {
+            case RECOGNITION -> l;
+            case ENROLLMENT -> Math.max(1, (int) (l * enrollmentShare));
+            case DEBUG -> Math.max(1, (int) (l * debugShare));
+        };
+    }
+
+    private Permit admit(Priority priority) {
+        int c = priority.ordinal();
+        inFlight[c]++;
+        running++;
+        windowPeak = Math.max(windowPeak, running);
+        admitted[c].increment();
+        return new Permit(priority);
+    }
+
+    private RejectedException reject(Priority priority) {
+        rejected[priority.ordinal()].increment();
+        return new RejectedException(priority, retryAfterSeconds(priority.ordinal()));
+    }
+
+    /** Roughly how long until a slot frees up for this class: queued work ahead over the limit, times latency. */
+    private int retryAfterSeconds(int c) {
+        int ahead = 0;
+        for (int h = 0; h <= c; h++) ahead += queued[h];
+        double latency = Math.max(lastWindowMillis, baselineMillis);
+        if (latency <= 0) latency = 500;
+        double seconds = latency * (ahead + 1) / limit / 1000.0;
+        return (int) Math.max(1, Math.min(30, Math.ceil(seconds)));
+    }
+
+    /** nanos is the hold time of a sampled permit, -1 otherwise. */
+    private void release(Priority priority, long nanos) {
+        if (!enabled) return;
+        int c = priority.ordinal();
+        lock.lock();
+        try {
+            inFlight[c]--;
+            running--;
+            if (nanos >= 0) {
+                windowNanos += nanos;
+                windowSamples++;
+            }
+            long now = System.nanoTime();
+            if (now - windowStart >= TimeUnit.MILLISECONDS.toNanos(windowMs)) adapt(now);
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long now) {
+        if (windowSamples >= MIN_WINDOW_SAMPLES) {
+            double mean = windowNanos / (double) windowSamples / 1_000_000;
+            lastWindowMillis = mean;
+            double baseline = baselineMillis;
+            baselineMillis = baseline == 0 || mean < baseline ? mean : baseline + (mean - baseline) * 0.01;
+
+            if (baseline > 0 && mean > baseline * latencyTolerance) {
+                int next = clamp(Math.min(limit - 1, (int) (limit * 0.9)));
+                if (next < limit) decreases.increment();
+                limit = next;
+            } else if (windowPeak >= limit && limit < maxLimit) {
+                limit = limit + 1;
+                increases.increment();
+            }
+        }
+        windowStart = now;
+        windowNanos = 0;
+        windowSamples = 0;
+        windowPeak = running;
+    }
+
+    /** Wakes as many waiters of the highest waiting class as there are free slots for. */
+    private void signalNext() {
+        for (int c = 0; c < CLASSES.length; c++) {
+            if (queued[c] > 0) {
+                int free = Math.min(limit - running, share(c) - inFlight[c]);
+                for (int i = 0; i < Math.min(free, queued[c]); i++) turn[c].signal();
+                return; // lower classes wait behind this one
+            }
+        }
+    }
+
+    private int clamp(int value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    /** Limit, slots in use and queue depth per class for /actuator/prometheus. */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("face.admission.limit", this, a -> a.limit)
+                .description("Current inference concurrency limit")
+                .register(registry);
+        for (Priority p : CLASSES) {
+            int c = p.ordinal();
+            Gauge.builder("face.admission.in.flight", this, a -> a.read(a.inFlight, c))
+                    .tag("class", p.tag())
+                    .description("Inference requests running")
+                    .register(registry);
+            Gauge.builder("face.admission.queued", this, a -> a.read(a.queued, c))
+                    .tag("class", p.tag())
+                    .description("Inference requests waiting for a slot")
+                    .register(registry);
+            FunctionCounter.builder("face.admission.rejected", rejected[c], LongAdder::sum)
+                    .tag("class", p.tag())
+                    .description("Inference requests shed with 429")
+                    .register(registry);
+        }
+    }
+
+    private int read(int[] counters, int c) {
+        lock.lock();
+        try {
+            return counters[c];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("limit", limit);
+        stats.put("minLimit", minLimit);
+        stats.put("maxLimit", maxLimit);
+        stats.put("baselineMillis", baselineMillis);
+        stats.put("lastWindowMillis", lastWindowMillis);
+        stats.put("limitIncreases", increases.sum());
+        stats.put("limitDecreases", decreases.sum());
+        lock.lock();
+        try {
+            stats.put("running", running);
+            for (Priority p : CLASSES) {
+                int c = p.ordinal();
+                Map<String, Object> cls = new LinkedHashMap<>();
+                cls.put("inFlight", inFlight[c]);
+                cls.put("share", share(c));
+                cls.put("queued", queued[c]);
+                cls.put("queueLimit", queueLimit[c]);
+                cls.put("admitted", admitted[c].sum());
+                cls.put("rejected", rejected[c].sum());
+                stats.put(p.tag(), cls);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+}
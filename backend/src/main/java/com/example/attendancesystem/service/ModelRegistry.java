@@ -0,0 +1,303 @@
+package com.example.attendancesystem.service;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns every ONNX Runtime session in the process.
+ *
+ * Model files are extracted from the classpath once into a cache directory
+ * (not a fresh temp copy per boot). The first session of a model writes its
+ * optimized graph next to it (to a temp file, moved into place once complete);
+ * later starts and extra shards load that file with graph optimization
+ * disabled. The file name carries the ONNX Runtime version, so an upgrade
+ * re-optimizes, and a cached graph that fails to load is deleted and rebuilt. Each model can be sharded over several
+ * sessions, handed out round-robin.
+ */
+public class ModelRegistry implements Closeable {
+
+    /** Per-model session settings. */
+    public static class ModelSpec {
+        final String name;
+        final String resource;
+        int intraOpThreads;
+        int interOpThreads = 1;
+        OrtSession.SessionOptions.OptLevel optLevel = OrtSession.SessionOptions.OptLevel.EXTENDED_OPT;
+        boolean cpuArena = true;
+        int sessions = 1;
+
+        public ModelSpec(String name, String resource) {
+            this.name = name;
+            this.resource = resource;
+        }
+
+        /** 0 lets ONNX Runtime pick (one thread per physical core). */
+        public ModelSpec intraOpThreads(int n) { this.intraOpThreads = n; return this; }
+        public ModelSpec interOpThreads(int n) { this.interOpThreads = n; return this; }
+        public ModelSpec optLevel(OrtSession.SessionOptions.OptLevel level) { this.optLevel = level; return this; }
+        public ModelSpec cpuArena(boolean enabled) { this.cpuArena = enabled; return this; }
+        public ModelSpec sessions(int n) { this.sessions = Math.max(1, n); return this; }
+    }
+
+    private static final String TMP_SUFFIX = ".optimizing.tmp";
+
+    private final OrtEnvironment env = OrtEnvironment.getEnvironment();
+    private final String ortVersion = env.getVersion().replaceAll("[^A-Za-z0-9.]", "_");
+    private final Path cacheDir;
+    private final Map<String, LoadedModel> models = new LinkedHashMap<>();
+
+    public ModelRegistry(Path cacheDir) throws IOException {
+        this.cacheDir = cacheDir;
+        Files.createDirectories(cacheDir);
+    }
+
+    public OrtEnvironment environment() {
+        return env;
+    }
+
+    /**
+     * Copies a classpath model into the cache directory unless an identical-size copy
+     * is already there. Also used for models run outside ONNX Runtime (RetinaFace/OpenCV).
+     */
+    public synchronized Path extract(String resource) throws IOException {
+        Resource r = new ClassPathResource(resource);
+        if (!r.exists()) throw new IOException(resource + " not found in resources/");
+        Path target = cacheDir.resolve(Path.of(resource).getFileName());
+        if (Files.exists(target) && Files.size(target) == r.contentLength()) return target;
+
+        Path tmp = Files.createTempFile(cacheDir, "extract-", ".part");
+        try (InputStream in = r.getInputStream()) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    public synchronized void register(ModelSpec spec) throws IOException, OrtException {
+        if (models.containsKey(spec.name)) throw new IllegalStateException(spec.name + " already registered");
+
+        long rssBefore = residentBytes();
+        long t0 = System.nanoTime();
+
+        Path source = extract(spec.resource);
+        String base = source.getFileName().toString().replaceFirst("\\.onnx$", "");
+        Path optimized = cacheDir.resolve(base + ".ort-" + ortVersion + "."
+                + spec.optLevel.name().toLowerCase() + ".optimized.onnx");
+        sweep(base, optimized);
+        boolean cached = Files.isRegularFile(optimized)
+                && Files.getLastModifiedTime(optimized).compareTo(Files.getLastModifiedTime(source)) >= 0;
+
+        OrtSession first = null;
+        OrtSession.SessionOptions firstOpts = null;
+        if (cached) {
+            firstOpts = options(spec);
+            firstOpts.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+            try {
+                first = env.createSession(optimized.toString(), firstOpts);
+            } catch (OrtException e) {
+                // Truncated or unreadable graph: drop it and optimize from the source again
+                System.out.println("⚠️ Cached graph " + optimized.getFileName() + " unusable, re-optimizing: " + e.getMessage());
+                firstOpts.close();
+                Files.deleteIfExists(optimized);
+                cached = false;
+            }
+        }
+        if (!cached) {
+            // ORT writes the graph in place; write a temp file and move it over so a crash leaves no partial cache
+            Path tmp = cacheDir.resolve(base + "." + ProcessHandle.current().pid() + TMP_SUFFIX);
+            firstOpts = options(spec);
+            firstOpts.setOptimizationLevel(spec.optLevel);
+            firstOpts.setOptimizedModelFilePath(tmp.toString());
+            try {
+                first = env.createSession(source.toString(), firstOpts);
+                Files.move(tmp, optimized, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (OrtException | IOException | RuntimeException e) {
+                if (first != null) first.close();
+                firstOpts.close();
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+        }
+
+        LoadedModel model = new LoadedModel(spec, cached);
+        model.add(first, firstOpts);
+        for (int i = 1; i < spec.sessions; i++) {
+            // remaining shards reuse the optimized graph
+            OrtSession.SessionOptions opts = options(spec);
+            opts.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+            model.add(env.createSession(optimized.toString(), opts), opts);
+        }
+
+        model.loadMillis = (System.nanoTime() - t0) / 1_000_000;
+        long rssAfter = residentBytes();
+        model.residentDeltaBytes = rssBefore < 0 || rssAfter < 0 ? -1 : rssAfter - rssBefore;
+        models.put(spec.name, model);
+
+        System.out.printf("✅ Model %s: %d session(s) in %d ms (%s), +%s resident%n",
+                spec.name, spec.sessions, model.loadMillis,
+                model.fromCache ? "cached optimized graph" : "optimized + cached",
+                model.residentDeltaBytes < 0 ? "n/a" : (model.residentDeltaBytes >> 20) + " MB");
+    }
+
+    /**
+     * Deletes this model's optimized graphs from other ONNX Runtime versions or
+     * opt levels, and temp files left by a process that died while optimizing.
+     */
+    private void sweep(String base, Path keep) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, base + ".*")) {
+            for (Path f : files) {
+                String n = f.getFileName().toString();
+                boolean stale = n.endsWith(".optimized.onnx") && !f.equals(keep);
+                if (stale || n.endsWith(TMP_SUFFIX) && !optimizing(n, base)) Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    /** True while the process named in a temp file (base.pid.suffix) is still alive. */
+    private static boolean optimizing(String fileName, String base) {
+        try {
+            long pid = Long.parseLong(fileName.substring(base.length() + 1, fileName.length() - TMP_SUFFIX.length()));
+            return ProcessHandle.of(pid).isPresent();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private OrtSession.SessionOptions options(ModelSpec spec) throws OrtException {
+        OrtSession.SessionOptions opts = new OrtSession.SessionOptions();
+        if (spec.intraOpThreads > 0) opts.setIntraOpNumThreads(spec.intraOpThreads);
+        opts.setInterOpNumThreads(spec.interOpThreads);
+        opts.setExecutionMode(spec.interOpThreads > 1
+                ? OrtSession.SessionOptions.ExecutionMode.PARALLEL
+                : OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+        opts.setCPUArenaAllocator(spec.cpuArena);
+        opts.setMemoryPatternOptimization(spec.cpuArena);
+        return opts;
+    }
+
+    /** Next session of the model, round-robin across its shards. */
+    public OrtSession session(String name) {
+        return model(name).next();
+    }
+
+    public int sessionCount(String name) {
+        return model(name).sessions.size();
+    }
+
+    public String inputName(String name) {
+        return model(name).inputName;
+    }
+
+    public String outputName(String name) {
+        return model(name).outputName;
+    }
+
+    private LoadedModel model(String name) {
+        LoadedModel m = models.get(name);
+        if (m == null) throw new IllegalStateException("Model not registered: " + name);
+        return m;
+    }
+
+    /** Load time, shard count and resident-memory growth per model. */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        models.forEach((name, m) -> {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("sessions", m.sessions.size());
+            s.put("loadMillis", m.loadMillis);
+            s.put("residentDeltaBytes", m.residentDeltaBytes);
+            s.put("optimizedGraphFromCache", m.fromCache);
+            s.put("optLevel", m.spec.optLevel.name());
+            s.put("intraOpThreads", m.spec.intraOpThreads);
+            s.put("interOpThreads", m.spec.interOpThreads);
+            s.put("cpuArena", m.spec.cpuArena);
+            stats.put(name, s);
+        });
+        stats.put("processResidentBytes", residentBytes());
+        return stats;
+    }
+
+    /** Resident growth measured while loading all sessions (weights, arenas at load time). */
+    public synchronized long residentDeltaBytes() {
+        long sum = 0;
+        for (LoadedModel m : models.values()) sum += Math.max(0, m.residentDeltaBytes);
+        return sum;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (LoadedModel m : models.values()) m.close();
+        models.clear();
+    }
+
+    /** VmRSS from /proc (Linux); -1 where unavailable. */
+    static long residentBytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    String kb = line.substring(6).trim().split("\\s+")[0];
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    /* ---------------- Helper ---------------- */
+    private static final class LoadedModel {
+        final ModelSpec spec;
+        final boolean fromCache;
+        final List<OrtSession> sessions = new ArrayList<>();
+        final List<OrtSession.SessionOptions> options = new ArrayList<>();
+        final AtomicInteger cursor = new AtomicInteger();
+        String inputName;
+        String outputName;
+        long loadMillis;
+        long residentDeltaBytes;
+
+        LoadedModel(ModelSpec spec, boolean fromCache) {
+            this.spec = spec;
+            this.fromCache = fromCache;
+        }
+
+        void add(OrtSession session, OrtSession.SessionOptions opts) {
+            if (inputName == null) inputName = session.getInputNames().iterator().next();
+            if (outputName == null) outputName = session.getOutputNames().iterator().next();
+            sessions.add(session);
+            options.add(opts);
+        }
+
+        OrtSession next() {
+            return sessions.get(Math.floorMod(cursor.getAndIncrement(), sessions.size()));
+        }
+
+        void close() {
+            for (OrtSession s : sessions) {
+                try {
+                    s.close();
+                } catch (OrtException e) {
+                    e.printStackTrace();
+                }
+            }
+            for (OrtSession.SessionOptions o : options) o.close();
+        }
+    }
+}
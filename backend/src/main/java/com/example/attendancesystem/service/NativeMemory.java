@@ -0,0 +1,88 @@
+package com.example.attendancesystem.service;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Native memory rules for the JavaCPP side of the vision pipeline.
+ *
+ * Every request (and every bulk-enrollment photo) runs inside {@link #scope()}:
+ * the decoded image, detector output headers, Rects and crops created while
+ * handling it are released when the scope closes, instead of whenever the GC
+ * finalizes their wrappers. Buffers that outlive a request (FrameGate's
+ * per-thread scratch Mats, ArcFace workspaces) go through {@link #keep}, so a
+ * scope that happens to be open when they are first created does not free them.
+ *
+ * {@link #stats()} reports what JavaCPP tracks next to process RSS; the
+ * remainder is native memory nobody in Java accounts for (ONNX Runtime arenas,
+ * OpenCV internals, thread stacks, metaspace), which is where a leak shows up.
+ */
+public final class NativeMemory {
+
+    private static final LongAdder scopes = new LongAdder();
+    private static final AtomicLong peakPhysicalBytes = new AtomicLong();
+
+    private NativeMemory() {
+    }
+
+    /** Opens a scope on the calling thread; everything native created until it closes is released with it. */
+    public static PointerScope scope() {
+        scopes.increment();
+        return new PointerScope();
+    }
+
+    /** Marks a long-lived pointer so that enclosing scopes leave it alone; it is freed by its own close(). */
+    public static <P extends Pointer> P keep(P pointer) {
+        pointer.retainReference();
+        return pointer;
+    }
+
+    /** Deep copy of img inside box; the ROI header is released right away. */
+    public static Mat crop(Mat img, Rect box) {
+        try (Mat roi = new Mat(img, box)) {
+            return roi.clone();
+        }
+    }
+
+    /** Process RSS as JavaCPP reads it (/proc/self/statm on Linux); 0 where unavailable. */
+    public static long physicalBytes() {
+        long rss = Pointer.physicalBytes();
+        peakPhysicalBytes.accumulateAndGet(rss, Math::max);
+        return rss;
+    }
+
+    public static Map<String, Object> stats() {
+        long rss = physicalBytes();
+        long javacpp = Pointer.totalBytes();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long direct = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) direct = pool.getMemoryUsed();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("javacppBytes", javacpp);
+        stats.put("javacppPointers", Pointer.totalCount());
+        stats.put("javacppMaxBytes", Pointer.maxBytes());
+        stats.put("physicalBytes", rss);
+        stats.put("peakPhysicalBytes", peakPhysicalBytes.get());
+        stats.put("maxPhysicalBytes", Pointer.maxPhysicalBytes());
+        stats.put("heapCommittedBytes", heap.getCommitted());
+        stats.put("heapUsedBytes", heap.getUsed());
+        stats.put("directBufferBytes", direct);
+        // ORT arenas and OpenCV's own allocations are invisible to both JavaCPP and the JVM
+        stats.put("untrackedNativeBytes", rss <= 0 ? -1 : Math.max(0, rss - heap.getCommitted() - direct - javacpp));
+        stats.put("scopesOpened", scopes.sum());
+        return stats;
+    }
+}
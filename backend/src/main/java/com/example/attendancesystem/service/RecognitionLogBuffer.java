@@ -0,0 +1,113 @@
+package com.example.attendancesystem.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-capacity, lock-free ring of recognition log records: many producers
+ * (request threads), one consumer (the log writer).
+ *
+ * Records are stored column-wise in preallocated arrays, so logging a match
+ * copies two primitives and three references that already exist (roll number,
+ * name and lecture strings) and allocates nothing. Each slot carries a sequence
+ * number (Vyukov's bounded queue): a producer claims a position with one CAS on
+ * the tail and publishes the slot by advancing its sequence; the consumer reads
+ * only slots whose sequence says they are complete. When the ring is full the
+ * record is dropped and counted instead of blocking the recognition path.
+ */
+public final class RecognitionLogBuffer {
+
+    /** Receives drained records in order. */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(long epochMillis, String rollNo, String name, String lecture, float accuracy);
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final long[] loggedAt;
+    private final float[] accuracy;
+    private final String[] rollNo;
+    private final String[] name;
+    private final String[] lecture;
+
+    private final AtomicLong tail = new AtomicLong(); // next position to claim
+    private volatile long head;                        // next position to read; written by the consumer only
+    private final LongAdder dropped = new LongAdder();
+
+    /** capacity is rounded up to a power of two. */
+    public RecognitionLogBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+        loggedAt = new long[size];
+        accuracy = new float[size];
+        rollNo = new String[size];
+        name = new String[size];
+        lecture = new String[size];
+    }
+
+    /** Adds a record; false (and counted as dropped) when the ring is full. Never blocks. */
+    public boolean offer(long epochMillis, String rollNo, String name, String lecture, float accuracy) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) (pos & mask);
+            long diff = sequence.get(i) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    loggedAt[i] = epochMillis;
+                    this.accuracy[i] = accuracy;
+                    this.rollNo[i] = rollNo;
+                    this.name[i] = name;
+                    this.lecture[i] = lecture;
+                    sequence.set(i, pos + 1); // publishes the fields above to the consumer
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // The consumer has not freed this slot yet: full
+                dropped.increment();
+                return false;
+            } else {
+                pos = tail.get(); // another producer took this position
+            }
+        }
+    }
+
+    /**
+     * Hands up to max published records to the sink, oldest first, and frees their
+     * slots. Single consumer: callers must not drain concurrently.
+     */
+    public int drain(Sink sink, int max) {
+        long h = head;
+        int n = 0;
+        while (n < max) {
+            int i = (int) (h & mask);
+            if (sequence.get(i) != h + 1) break; // empty, or claimed but not yet written
+            sink.accept(loggedAt[i], rollNo[i], name[i], lecture[i], accuracy[i]);
+            rollNo[i] = null;
+            name[i] = null;
+            lecture[i] = null;
+            sequence.set(i, h + mask + 1); // free for the producer one lap ahead
+            h++;
+            n++;
+        }
+        head = h;
+        return n;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Records waiting to be drained (approximate while producers are running). */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity(), tail.get() - head));
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+}
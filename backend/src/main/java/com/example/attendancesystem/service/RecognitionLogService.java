@@ -0,0 +1,229 @@
+package com.example.attendancesystem.service;
+
+import com.example.attendancesystem.dto.RecognitionLogPage;
+import com.example.attendancesystem.dto.RecognitionLogQuery;
+import com.example.attendancesystem.model.RecognitionLog;
+import com.example.attendancesystem.repository.RecognitionLogQueryRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Recognition log: every successful match, kept in the recognition_log table.
+ *
+ * The recognition path only offers a record to a {@link RecognitionLogBuffer};
+ * a writer thread drains it every flush-interval-ms (or as soon as a batch is
+ * waiting) and inserts JDBC batches. Memory stays bounded by the ring capacity:
+ * if the database falls behind long enough for the ring to fill, new records
+ * are dropped and counted rather than slowing recognition down. A batch that
+ * fails to insert is dropped the same way. The log is diagnostic; attendance
+ * itself goes through {@link AttendanceWriter}, which never drops.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecognitionLogService implements MeterBinder {
+
+    private static final String INSERT =
+            "INSERT INTO recognition_log (roll_no, name, lecture, accuracy, logged_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RecognitionLogQueryRepository queryRepository;
+
+    @Value("${face.logs.capacity:8192}")
+    private int capacity;
+    @Value("${face.logs.batch-size:500}")
+    private int batchSize;
+    @Value("${face.logs.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    private RecognitionLogBuffer buffer;
+    private Batch batch;
+    private Thread writer;
+    private volatile boolean running;
+    private final ReentrantLock drainLock = new ReentrantLock(); // the ring's single consumer
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        buffer = new RecognitionLogBuffer(capacity);
+        batch = new Batch(Math.max(1, batchSize));
+        running = true;
+        writer = new Thread(this::writeLoop, "recognition-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        System.out.println("✅ Recognition log: ring of " + buffer.capacity() + ", batches of " + batch.capacity);
+    }
+
+    /** Records one match. Lock-free; drops the record if the ring is full. */
+    public void log(String rollNo, String name, String lecture, double accuracy) {
+        buffer.offer(System.currentTimeMillis(), rollNo, name, lecture, (float) accuracy);
+        if (buffer.size() >= batch.capacity) LockSupport.unpark(writer);
+    }
+
+    /** A page of the log, newest first. Pending records are written first so the page is current. */
+    public RecognitionLogPage getPage(RecognitionLogQuery query) {
+        flush();
+        List<RecognitionLog> rows = queryRepository.findPage(query);
+        if (rows.size() <= query.getLimit()) return new RecognitionLogPage(rows, null);
+
+        rows = rows.subList(0, query.getLimit());
+        RecognitionLog last = rows.get(rows.size() - 1);
+        return new RecognitionLogPage(rows, RecognitionLogQuery.cursorOf(last.getLoggedAt(), last.getId()));
+    }
+
+    /** Writes everything in the ring so far before returning. */
+    public void flush() {
+        drainLock.lock();
+        try {
+            while (buffer.drain(batch, batch.capacity) > 0) write();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            if (!running) break;
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Recognition log writer: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Inserts the filled batch; on failure the rows are counted as lost. */
+    private void write() {
+        try {
+            jdbcTemplate.batchUpdate(INSERT, batch);
+            written.add(batch.size);
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            failedRows.add(batch.size);
+            System.out.println("⚠️ Recognition log batch of " + batch.size + " dropped: " + e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int pending = buffer.size();
+        flush();
+        System.out.println("✅ Recognition log drained " + pending + " pending record(s) on shutdown");
+    }
+
+    /** Buffered records, drops and writes for /actuator/prometheus. */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("face.logs.buffered", this, s -> s.buffer == null ? 0 : s.buffer.size())
+                .description("Recognition log records waiting in the ring")
+                .register(registry);
+        FunctionCounter.builder("face.logs.written", written, LongAdder::sum)
+                .description("Recognition log records inserted")
+                .register(registry);
+        FunctionCounter.builder("face.logs.dropped", this, s -> s.buffer == null ? 0 : s.buffer.dropped())
+                .tag("reason", "full")
+                .description("Recognition log records lost")
+                .register(registry);
+        FunctionCounter.builder("face.logs.dropped", failedRows, LongAdder::sum)
+                .tag("reason", "insert_failed")
+                .description("Recognition log records lost")
+                .register(registry);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", buffer.capacity());
+        stats.put("buffered", buffer.size());
+        stats.put("written", written.sum());
+        stats.put("droppedFull", buffer.dropped());
+        stats.put("droppedFailed", failedRows.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        return stats;
+    }
+
+    /** Reusable column arrays for one JDBC batch; only touched under drainLock. */
+    private static final class Batch implements RecognitionLogBuffer.Sink, BatchPreparedStatementSetter {
+        final int capacity;
+        final long[] loggedAt;
+        final float[] accuracy;
+        final String[] rollNo;
+        final String[] name;
+        final String[] lecture;
+        int size;
+
+        Batch(int capacity) {
+            this.capacity = capacity;
+            loggedAt = new long[capacity];
+            accuracy = new float[capacity];
+            rollNo = new String[capacity];
+            name = new String[capacity];
+            lecture = new String[capacity];
+        }
+
+        @Override
+        public void accept(long epochMillis, String rollNo, String name, String lecture, float accuracy) {
+            loggedAt[size] = epochMillis;
+            this.accuracy[size] = accuracy;
+            this.rollNo[size] = rollNo;
+            this.name[size] = name;
+            this.lecture[size] = lecture;
+            size++;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setString(1, rollNo[i]);
+            ps.setString(2, name[i]);
+            ps.setString(3, lecture[i]);
+            ps.setFloat(4, accuracy[i]);
+            ps.setTimestamp(5, new Timestamp(loggedAt[i]));
+        }
+
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
+
+        void clear() {
+            Arrays.fill(rollNo, 0, size, null);
+            Arrays.fill(name, 0, size, null);
+            Arrays.fill(lecture, 0, size, null);
+            size = 0;
+        }
+    }
+}
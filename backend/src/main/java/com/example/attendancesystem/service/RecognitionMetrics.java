@@ -0,0 +1,97 @@
+package com.example.attendancesystem.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer meters for the recognition pipeline, scraped at /actuator/prometheus.
+ *
+ * face.stage{operation, stage} times each step of a request (decode, gate,
+ * detect, embed, match, persist) and face.request{operation, outcome} the whole
+ * request, so a slow /recognize can be pinned on one stage. Both publish
+ * percentile histograms. Callers pass System.nanoTime() marks instead of
+ * holding Timer.Sample objects: {@link #stage} returns the mark for the next
+ * stage. Timers are cached in nested maps keyed by the tag values themselves
+ * (constant strings with cached hash codes), so once a timer exists a record
+ * is two map lookups and allocates nothing.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecognitionMetrics {
+
+    public static final String RECOGNIZE = "recognize";
+    public static final String GROUP = "group";
+    public static final String FRAME = "frame";
+    public static final String REGISTER = "register";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+    private final Map<String, Map<String, Timer>> stageTimers = new ConcurrentHashMap<>();   // operation -> stage
+    private final Map<String, Map<String, Timer>> requestTimers = new ConcurrentHashMap<>(); // operation -> outcome
+    private final Map<String, Timer> markTimers = new ConcurrentHashMap<>();                 // outcome
+
+    /** Records the time since {@code since} for one stage; returns now, the start of the next stage. */
+    public long stage(String operation, String stage, long since) {
+        long now = System.nanoTime();
+        timer(stageTimers, operation, stage, "face.stage", "stage", "Time spent in one stage of a face request")
+                .record(now - since, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /** Records a whole request with its outcome (success, unknown, no_face, error, a gate verdict, ...). */
+    public void request(String operation, String outcome, long since) {
+        timer(requestTimers, operation, outcome(outcome), "face.request", "outcome", "Face request latency by outcome")
+                .record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+    }
+
+    /** Attendance mark latency by outcome: duplicate (dedupe cache hit), queued (write-behind), written (synchronous fallback), error. */
+    public void attendanceMark(String outcome, long since) {
+        Timer t = markTimers.get(outcome);
+        if (t == null) {
+            t = markTimers.computeIfAbsent(outcome, o -> build(Timer.builder("attendance.mark").tag("outcome", o),
+                    "Attendance mark latency by outcome"));
+        }
+        t.record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).description(description).register(registry);
+    }
+
+    /** FaceResult statuses, with "fail" (no usable face) named for what it means. */
+    private static String outcome(String status) {
+        if (status == null) return "error";
+        return "fail".equals(status) ? "no_face" : status;
+    }
+
+    /** operation -> second tag value; the lambdas only run (and allocate) the first time. */
+    private Timer timer(Map<String, Map<String, Timer>> cache, String operation, String value,
+                        String name, String tag, String description) {
+        Map<String, Timer> byValue = cache.get(operation);
+        if (byValue == null) byValue = cache.computeIfAbsent(operation, k -> new ConcurrentHashMap<>());
+        Timer t = byValue.get(value);
+        if (t != null) return t;
+        return byValue.computeIfAbsent(value, v -> build(
+                Timer.builder(name).tag("operation", operation).tag(tag, v), description));
+    }
+
+    private Timer build(Timer.Builder builder, String description) {
+        return builder
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.attendancesystem.service;
+
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns raw RetinaFace outputs (loc, conf, landmarks) into scored boxes with
+ * five landmarks each, after score filtering and NMS.
+ *
+ * Priors are computed once per input size and kept as flat arrays. Each thread
+ * decodes into its own {@link Detections} workspace, so steady-state decoding
+ * allocates nothing beyond the output headers and pointer casts needed to
+ * bulk-copy the outputs, and those are closed before decode returns.
+ * The returned Detections is overwritten by the next decode on the same thread.
+ */
+public class RetinaFaceDecoder {
+
+    private static final int[] STEPS = {8, 16, 32};
+    private static final float[][] MIN_SIZES = {{16, 32}, {64, 128}, {256, 512}};
+    private static final float CENTER_VARIANCE = 0.1f;
+    private static final float SIZE_VARIANCE = 0.2f;
+
+    private static final Map<Long, Priors> PRIORS = new ConcurrentHashMap<>();
+
+    private final Priors priors;
+    private final float scoreThreshold;
+    private final float nmsThreshold;
+    private final ThreadLocal<Detections> workspace;
+
+    public RetinaFaceDecoder(int inputWidth, int inputHeight, float scoreThreshold, float nmsThreshold) {
+        this.priors = PRIORS.computeIfAbsent(((long) inputWidth << 32) | inputHeight,
+                k -> new Priors(inputWidth, inputHeight));
+        this.scoreThreshold = scoreThreshold;
+        this.nmsThreshold = nmsThreshold;
+        this.workspace = ThreadLocal.withInitial(() -> new Detections(priors.count));
+    }
+
+    public int priorCount() {
+        return priors.count;
+    }
+
+    /**
+     * Decodes the network outputs for an image of imageWidth x imageHeight pixels.
+     * Outputs are identified by their last dimension (4 = loc, 2 = conf, 10 = landmarks)
+     * so the order the ONNX export lists them in does not matter.
+     */
+    public Detections decode(MatVector outs, int imageWidth, int imageHeight) {
+        // outs.get() returns a fresh cv::Mat header each time: close them here, not in the GC
+        Mat loc = null, conf = null, landm = null;
+        try {
+            for (long i = 0; i < outs.size(); i++) {
+                Mat m = outs.get(i);
+                switch (m.size(m.dims() - 1)) {
+                    case 4: loc = m; break;
+                    case 2: conf = m; break;
+                    case 10: landm = m; break;
+                    default: m.close(); break;
+                }
+            }
+            return decode(loc, conf, landm, imageWidth, imageHeight);
+        } finally {
+            if (loc != null) loc.close();
+            if (conf != null) conf.close();
+            if (landm != null) landm.close();
+        }
+    }
+
+    private Detections decode(Mat loc, Mat conf, Mat landm, int imageWidth, int imageHeight) {
+        Detections d = workspace.get();
+        d.count = 0;
+        if (loc == null || conf == null) return d;
+
+        int n = Math.min(priors.count, loc.size(loc.dims() - 2));
+        copy(conf, d.conf, n * 2);
+
+        // Score pre-filter: only the survivors get their boxes decoded
+        int candidates = 0;
+        for (int i = 0; i < n; i++) {
+            float score = d.conf[i * 2 + 1];
+            if (score >= scoreThreshold) d.order[candidates++] = i;
+        }
+        if (candidates == 0) return d;
+
+        copy(loc, d.loc, n * 4);
+        boolean hasLandmarks = landm != null;
+        if (hasLandmarks) copy(landm, d.landm, n * 10);
+
+        sortByScore(d.order, d.conf, candidates);
+
+        for (int c = 0; c < candidates; c++) {
+            int i = d.order[c];
+            int b = c * 4;
+            float pw = priors.w[i], ph = priors.h[i];
+            float cx = priors.cx[i] + d.loc[i * 4] * CENTER_VARIANCE * pw;
+            float cy = priors.cy[i] + d.loc[i * 4 + 1] * CENTER_VARIANCE * ph;
+            float w = (float) (Math.exp(d.loc[i * 4 + 2] * SIZE_VARIANCE) * pw);
+            float h = (float) (Math.exp(d.loc[i * 4 + 3] * SIZE_VARIANCE) * ph);
+            d.candBoxes[b] = cx - w / 2f;
+            d.candBoxes[b + 1] = cy - h / 2f;
+            d.candBoxes[b + 2] = cx + w / 2f;
+            d.candBoxes[b + 3] = cy + h / 2f;
+            d.suppressed[c] = false;
+        }
+
+        // Greedy NMS in normalized coordinates, highest score first
+        for (int c = 0; c < candidates; c++) {
+            if (d.suppressed[c]) continue;
+            int i = d.order[c];
+            int out = d.count++;
+            int b = c * 4;
+
+            d.scores[out] = d.conf[i * 2 + 1];
+            d.boxes[out * 4] = clamp(d.candBoxes[b]) * imageWidth;
+            d.boxes[out * 4 + 1] = clamp(d.candBoxes[b + 1]) * imageHeight;
+            d.boxes[out * 4 + 2] = clamp(d.candBoxes[b + 2]) * imageWidth;
+            d.boxes[out * 4 + 3] = clamp(d.candBoxes[b + 3]) * imageHeight;
+            for (int k = 0; k < 5; k++) {
+                float lx = hasLandmarks ? priors.cx[i] + d.landm[i * 10 + 2 * k] * CENTER_VARIANCE * priors.w[i] : 0f;
+                float ly = hasLandmarks ? priors.cy[i] + d.landm[i * 10 + 2 * k + 1] * CENTER_VARIANCE * priors.h[i] : 0f;
+                d.landmarks[out * 10 + 2 * k] = lx * imageWidth;
+                d.landmarks[out * 10 + 2 * k + 1] = ly * imageHeight;
+            }
+
+            for (int o = c + 1; o < candidates; o++) {
+                if (!d.suppressed[o] && iou(d.candBoxes, b, o * 4) > nmsThreshold) d.suppressed[o] = true;
+            }
+        }
+        return d;
+    }
+
+    /** Bulk-copies the first n floats of a CV_32F output into dst. */
+    private static void copy(Mat m, float[] dst, int n) {
+        try (FloatPointer data = new FloatPointer(m.data())) {
+            data.get(dst, 0, n);
+        }
+    }
+
+    private static float clamp(float v) {
+        return v < 0f ? 0f : Math.min(v, 1f);
+    }
+
+    private static float iou(float[] boxes, int a, int b) {
+        float iw = Math.min(boxes[a + 2], boxes[b + 2]) - Math.max(boxes[a], boxes[b]);
+        float ih = Math.min(boxes[a + 3], boxes[b + 3]) - Math.max(boxes[a + 1], boxes[b + 1]);
+        if (iw <= 0 || ih <= 0) return 0f;
+        float inter = iw * ih;
+        float union = (boxes[a + 2] - boxes[a]) * (boxes[a + 3] - boxes[a + 1])
+                + (boxes[b + 2] - boxes[b]) * (boxes[b + 3] - boxes[b + 1]) - inter;
+        return inter / union;
+    }
+
+    /** Insertion sort of prior indices by descending face score; candidate lists are short. */
+    private static void sortByScore(int[] order, float[] conf, int n) {
+        for (int i = 1; i < n; i++) {
+            int idx = order[i];
+            float s = conf[idx * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && conf[order[j] * 2 + 1] < s) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = idx;
+        }
+    }
+
+    /* ---------------- Helper ---------------- */
+
+    /** Per-thread decode workspace and result; pixel coordinates of the source image. */
+    public static final class Detections {
+        private final float[] loc, conf, landm, candBoxes;
+        private final int[] order;
+        private final boolean[] suppressed;
+        private final float[] boxes, scores, landmarks;
+        private int count;
+
+        Detections(int priors) {
+            loc = new float[priors * 4];
+            conf = new float[priors * 2];
+            landm = new float[priors * 10];
+            candBoxes = new float[priors * 4];
+            order = new int[priors];
+            suppressed = new boolean[priors];
+            boxes = new float[priors * 4];
+            scores = new float[priors];
+            landmarks = new float[priors * 10];
+        }
+
+        public int count() { return count; }
+        public float score(int i) { return scores[i]; }
+        public float x1(int i) { return boxes[i * 4]; }
+        public float y1(int i) { return boxes[i * 4 + 1]; }
+        public float x2(int i) { return boxes[i * 4 + 2]; }
+        public float y2(int i) { return boxes[i * 4 + 3]; }
+
+        /** Box i as a pixel Rect clipped to the image, or null when nothing of it is inside. */
+        public Rect rect(int i, int imageWidth, int imageHeight) {
+            int x1 = Math.round(x1(i));
+            int y1 = Math.round(y1(i));
+            int bw = Math.min(imageWidth - x1, Math.round(x2(i) - x1(i)));
+            int bh = Math.min(imageHeight - y1, Math.round(y2(i) - y1(i)));
+            return bw <= 0 || bh <= 0 ? null : new Rect(x1, y1, bw, bh);
+        }
+
+        /** Landmark k (0 = left eye, 1 = right eye, 2 = nose, 3 = left mouth, 4 = right mouth). */
+        public float landmarkX(int i, int k) { return landmarks[i * 10 + 2 * k]; }
+        public float landmarkY(int i, int k) { return landmarks[i * 10 + 2 * k + 1]; }
+    }
+
+    /** Prior boxes as parallel flat arrays in normalized (0..1) coordinates. */
+    private static final class Priors {
+        final float[] cx, cy, w, h;
+        final int count;
+
+        Priors(int width, int height) {
+            int n = 0;
+            for (int s = 0; s < STEPS.length; s++) {
+                n += (int) Math.ceil((float) width / STEPS[s]) * (int) Math.ceil((float) height / STEPS[s])
+                        * MIN_SIZES[s].length;
+            }
+            count = n;
+            cx = new float[n];
+            cy = new float[n];
+            w = new float[n];
+            h = new float[n];
+
+            int i = 0;
+            for (int s = 0; s < STEPS.length; s++) {
+                int fmW = (int) Math.ceil((float) width / STEPS[s]);
+                int fmH = (int) Math.ceil((float) height / STEPS[s]);
+                for (int y = 0; y < fmH; y++)
+                    for (int x = 0; x < fmW; x++)
+                        for (float size : MIN_SIZES[s]) {
+                            cx[i] = (x + 0.5f) * STEPS[s] / width;
+                            cy[i] = (y + 0.5f) * STEPS[s] / height;
+                            w[i] = size / width;
+                            h[i] = size / height;
+                            i++;
+                        }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.attendancesystem.service;
+
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_dnn;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_core.StringVector;
+import org.bytedeco.opencv.opencv_dnn.Net;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed pool of RetinaFace networks. OpenCV's Net.setInput/forward keep state on
+ * the Net itself, so each request thread borrows an exclusive instance, runs the
+ * forward pass into that instance's preallocated blob and output MatVector, and
+ * hands it back. Borrowing waits at most the configured timeout.
+ */
+public class RetinaFaceDetectorPool implements Closeable {
+
+    private final BlockingQueue<Detector> idle;
+    private final List<Detector> all = new ArrayList<>();
+    private final long borrowTimeoutMillis;
+
+    public RetinaFaceDetectorPool(String modelPath, int size, int inputSize, long borrowTimeoutMillis) {
+        int n = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        this.idle = new ArrayBlockingQueue<>(n);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        for (int i = 0; i < n; i++) {
+            Detector d = new Detector(opencv_dnn.readNetFromONNX(modelPath), inputSize);
+            all.add(d);
+            idle.add(d);
+        }
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public int available() {
+        return idle.size();
+    }
+
+    /** Exclusive detector; must be returned with {@link #release}. */
+    public Detector borrow() throws InterruptedException {
+        Detector d = idle.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (d == null)
+            throw new IllegalStateException("No face detector free within " + borrowTimeoutMillis + " ms");
+        return d;
+    }
+
+    public void release(Detector d) {
+        idle.offer(d);
+    }
+
+    @Override
+    public void close() {
+        for (Detector d : all) d.close();
+        all.clear();
+        idle.clear();
+    }
+
+    /* ---------------- Helper ---------------- */
+
+    /** One network plus the buffers it reuses on every forward pass. */
+    public static final class Detector {
+        private final Net net;
+        private final StringVector outNames;
+        private final Size inputSize;
+        private final Scalar mean = new Scalar(104, 117, 123, 0);
+        private final Mat resized = new Mat();
+        private final Mat blob = new Mat();
+        private final MatVector outs = new MatVector();
+
+        Detector(Net net, int inputSize) {
+            this.net = net;
+            this.outNames = net.getUnconnectedOutLayersNames();
+            this.inputSize = new Size(inputSize, inputSize);
+        }
+
+        /** Runs the network on a BGR image; outputs stay valid until the next forward on this detector. */
+        public MatVector forward(Mat img) {
+            opencv_imgproc.resize(img, resized, inputSize);
+            opencv_dnn.blobFromImage(resized, blob, 1.0, inputSize, mean, false, false, opencv_core.CV_32F);
+            net.setInput(blob);
+            net.forward(outs, outNames);
+            return outs;
+        }
+
+        void close() {
+            outs.close();
+            blob.close();
+            resized.close();
+            mean.close();
+            inputSize.close();
+            outNames.close();
+            net.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.attendancesystem.service;
+
+import com.example.attendancesystem.model.LectureEnrollment;
+import com.example.attendancesystem.repository.LectureRepositary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lecture rosters and their materialized sub-galleries.
+ *
+ * Every lecture with a roster gets its own exact {@link EmbeddingGallery} that
+ * holds the embeddings of its enrolled students. The galleries are kept in step
+ * with roster edits (applied after the edit commits) and re-enrollments, so
+ * recognition for a lecture scans only that class. Lectures without a roster have no partition and use the global index.
+ */
+@Service
+@RequiredArgsConstructor
+public class RosterService {
+
+    private final LectureRepositary lectureRepositary;
+    private final FaceIndex faceIndex;
+
+    private final Map<String, EmbeddingGallery> partitions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> lecturesOf = new ConcurrentHashMap<>();
+
+    /** Rebuilds every partition from the stored rosters and the current global index. */
+    public synchronized void rebuild() {
+        long t0 = System.nanoTime();
+        partitions.clear();
+        lecturesOf.clear();
+        List<LectureEnrollment> rows = lectureRepositary.findAll();
+        Map<String, List<String>> members = new LinkedHashMap<>();
+        for (LectureEnrollment e : rows) members.computeIfAbsent(e.getLecture(), k -> new ArrayList<>()).add(e.getRollNo());
+        members.forEach(this::addMembers);
+        System.out.printf("✅ Lecture rosters: %d lectures, %d enrollments in %d ms%n",
+                partitions.size(), rows.size(), (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** Sub-gallery for the lecture, or null when the lecture has no roster. */
+    public FaceIndex partition(String lecture) {
+        return lecture == null ? null : partitions.get(lecture);
+    }
+
+    /** Adds students to a lecture's roster; returns how many were newly enrolled. */
+    @Transactional
+    public synchronized int enroll(String lecture, Collection<String> rollNos) {
+        List<String> added = new ArrayList<>();
+        for (String rollNo : rollNos) {
+            if (rollNo == null || rollNo.isBlank() || lectureRepositary.existsByLectureAndRollNo(lecture, rollNo)) continue;
+            lectureRepositary.save(new LectureEnrollment(null, lecture, rollNo));
+            added.add(rollNo);
+        }
+        afterCommit(() -> addMembers(lecture, added));
+        return added.size();
+    }
+
+    @Transactional
+    public synchronized boolean unenroll(String lecture, String rollNo) {
+        if (lectureRepositary.deleteByLectureAndRollNo(lecture, rollNo) == 0) return false;
+        afterCommit(() -> {
+            EmbeddingGallery partition = partitions.get(lecture);
+            if (partition != null) partition.remove(rollNo);
+            Set<String> lectures = lecturesOf.get(rollNo);
+            if (lectures != null) lectures.remove(lecture);
+        });
+        return true;
+    }
+
+    /**
+     * Applies an in-memory roster change once the surrounding transaction has
+     * committed, so a failed commit (e.g. a unique violation from another
+     * instance) leaves the partitions matching the database.
+     */
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (RosterService.this) {
+                    change.run();
+                }
+            }
+        });
+    }
+
+    public List<String> roster(String lecture) {
+        List<String> rollNos = new ArrayList<>();
+        for (LectureEnrollment e : lectureRepositary.findByLecture(lecture)) rollNos.add(e.getRollNo());
+        return rollNos;
+    }
+
+    /** Called after a (re-)registration so every partition the student is in sees the new embedding. */
+    public void onEmbeddingChanged(String rollNo, float[] embedding) {
+        Set<String> lectures = lecturesOf.get(rollNo);
+        if (lectures == null) return;
+        for (String lecture : lectures) {
+            EmbeddingGallery partition = partitions.get(lecture);
+            if (partition != null) partition.put(rollNo, embedding);
+        }
+    }
+
+    /** Bulk form of {@link #onEmbeddingChanged}: one putAll per affected partition. */
+    public void onEmbeddingsChanged(Map<String, float[]> embeddings) {
+        Map<String, Map<String, float[]>> byLecture = new LinkedHashMap<>();
+        embeddings.forEach((rollNo, embedding) -> {
+            Set<String> lectures = lecturesOf.get(rollNo);
+            if (lectures == null) return;
+            for (String lecture : lectures) byLecture.computeIfAbsent(lecture, k -> new LinkedHashMap<>()).put(rollNo, embedding);
+        });
+        byLecture.forEach((lecture, batch) -> {
+            EmbeddingGallery partition = partitions.get(lecture);
+            if (partition != null) partition.putAll(batch);
+        });
+    }
+
+    private void addMembers(String lecture, Collection<String> rollNos) {
+        if (rollNos.isEmpty()) return;
+        EmbeddingGallery partition = partitions.computeIfAbsent(lecture, k -> new EmbeddingGallery());
+        Map<String, float[]> embeddings = new LinkedHashMap<>();
+        for (String rollNo : rollNos) {
+            lecturesOf.computeIfAbsent(rollNo, k -> ConcurrentHashMap.newKeySet()).add(lecture);
+            float[] embedding = faceIndex.get(rollNo);
+            if (embedding != null) embeddings.put(rollNo, embedding);
+        }
+        partition.putAll(embeddings);
+    }
+
+    /** Indexed (face-registered) students per lecture. */
+    public Map<String, Object> stats() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        partitions.forEach((lecture, gallery) -> sizes.put(lecture, gallery.size()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lectures", sizes.size());
+        stats.put("indexedPerLecture", sizes);
+        return stats;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.attendancesystem.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact gallery for small enrollments, HNSW once the gallery is large enough for
+ * the linear scan to matter. The exact gallery stays the source of truth; the
+ * HNSW graph is built from it the first time the size crosses the threshold and
+ * then maintained incrementally alongside it.
+ */
+public class TieredFaceIndex implements FaceIndex {
+
+    private final EmbeddingGallery exact;
+    private final int exactThreshold;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private volatile HnswFaceIndex approximate;
+
+    public TieredFaceIndex(int dim, int exactThreshold, int m, int efConstruction, int efSearch) {
+        this.exact = new EmbeddingGallery(dim);
+        this.exactThreshold = exactThreshold;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public synchronized void put(String rollNo, float[] embedding) {
+        exact.put(rollNo, embedding);
+        if (approximate != null) {
+            approximate.put(rollNo, embedding);
+        } else if (exact.size() >= exactThreshold) {
+            buildApproximate();
+        }
+    }
+
+    @Override
+    public synchronized void putAll(Map<String, float[]> embeddings) {
+        exact.putAll(embeddings);
+        if (approximate != null) {
+            embeddings.forEach(approximate::put);
+        } else if (exact.size() >= exactThreshold) {
+            buildApproximate();
+        }
+    }
+
+    private void buildApproximate() {
+        HnswFaceIndex index = new HnswFaceIndex(exact.dimension(), m, efConstruction, efSearch);
+        for (String r : exact.rollNos()) index.put(r, exact.get(r));
+        approximate = index;
+    }
+
+    @Override
+    public synchronized boolean remove(String rollNo) {
+        if (approximate != null) approximate.remove(rollNo);
+        return exact.remove(rollNo);
+    }
+
+    @Override
+    public synchronized void clear() {
+        exact.clear();
+        approximate = null;
+    }
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        HnswFaceIndex ann = approximate;
+        if (ann == null || exact.size() < exactThreshold) return exact.search(query, k);
+        return ann.search(query, k);
+    }
+
+    @Override
+    public FaceMatch[] bestAll(float[][] queries) {
+        HnswFaceIndex ann = approximate;
+        if (ann == null || exact.size() < exactThreshold) return exact.bestAll(queries);
+        return ann.bestAll(queries);
+    }
+
+    @Override
+    public boolean contains(String rollNo) {
+        return exact.contains(rollNo);
+    }
+
+    @Override
+    public float[] get(String rollNo) {
+        return exact.get(rollNo);
+    }
+
+    @Override
+    public int size() {
+        return exact.size();
+    }
+
+    /** True once searches are served by the HNSW graph. */
+    public boolean isApproximate() {
+        return approximate != null && exact.size() >= exactThreshold;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.attendancesystem.util;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import com.example.attendancesystem.service.ArcFaceWorkspace;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Before/after allocation report for ArcFace preprocessing.
+ *
+ * Usage: EmbeddingAllocationReport [iterations] [batch]
+ *
+ * "legacy" is the per-call path the service used to run (two Mats, a float[] and
+ * a fresh direct buffer per call, UByteIndexer reads, a new input tensor);
+ * "workspace" is {@link ArcFaceWorkspace}. Both stop short of session.run, so no
+ * model file is needed; the workspace binds its tensors once per batch size, so
+ * they are not part of its steady state anyway.
+ *
+ * Heap bytes come from the thread allocation counter. Direct bytes and native
+ * objects (JavaCPP pointers with a deallocator: Mats, Sizes, indexers) are the
+ * growth of the live totals, so run with a heap large enough that no GC happens
+ * mid-measurement (e.g. -Xmx4g).
+ */
+public class EmbeddingAllocationReport {
+
+    public static void main(String[] args) throws OrtException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int batch = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        List<Mat> faces = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            Mat face = new Mat(160 + 8 * i, 140 + 8 * i, opencv_core.CV_8UC3);
+            opencv_core.randu(face, new Mat(new Scalar(0.0)), new Mat(new Scalar(255.0)));
+            faces.add(face);
+        }
+
+        ArcFaceWorkspace ws = new ArcFaceWorkspace(env, "input", "output", batch);
+        Run legacy = () -> {
+            try (OnnxTensor t = legacyPreprocess(env, faces)) {
+                return t.getInfo().getShape()[0];
+            }
+        };
+        Run workspace = () -> {
+            for (int i = 0; i < batch; i++) ws.put(i, faces.get(i));
+            return batch;
+        };
+
+        // Warm up both paths (JIT, OpenCV thread pools)
+        for (int i = 0; i < 200; i++) {
+            legacy.once();
+            workspace.once();
+        }
+
+        System.out.printf("%d iterations x %d faces%n%n", iterations, batch);
+        System.out.printf("%-10s %14s %14s %16s %12s%n", "path", "heap B/face", "direct B/face", "native objs/face", "us/face");
+        measure("legacy", legacy, iterations, batch);
+        measure("workspace", workspace, iterations, batch);
+        ws.close();
+    }
+
+    private interface Run {
+        long once() throws OrtException;
+    }
+
+    private static void measure(String name, Run run, int iterations, int batch) throws OrtException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        long heap0 = threads.getThreadAllocatedBytes(tid);
+        long direct0 = directBytes();
+        long native0 = Pointer.totalCount();
+        long t0 = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) sink += run.once();
+        long nanos = System.nanoTime() - t0;
+        long heap = threads.getThreadAllocatedBytes(tid) - heap0;
+        long direct = directBytes() - direct0;
+        long nat = Pointer.totalCount() - native0;
+
+        double faces = (double) iterations * batch;
+        System.out.printf("%-10s %14.0f %14.0f %16.2f %12.1f%s%n", name,
+                heap / faces, Math.max(0, direct) / faces, Math.max(0, nat) / faces, nanos / faces / 1_000.0,
+                sink == 0 ? " (no work?)" : "");
+    }
+
+    private static long directBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getTotalCapacity();
+        }
+        return 0;
+    }
+
+    /** The preprocessing FaceRecognitionService ran per call before ArcFaceWorkspace. */
+    private static OnnxTensor legacyPreprocess(OrtEnvironment env, List<Mat> faces) throws OrtException {
+        int n = faces.size();
+        int faceLen = 3 * 112 * 112;
+        FloatBuffer fb = ByteBuffer.allocateDirect(n * faceLen * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        float[] chw = new float[faceLen];
+
+        for (Mat face : faces) {
+            Mat resized = new Mat();
+            opencv_imgproc.resize(face, resized, new Size(112, 112));
+            Mat rgb = new Mat();
+            opencv_imgproc.cvtColor(resized, rgb, opencv_imgproc.COLOR_BGR2RGB);
+
+            UByteIndexer idx = rgb.createIndexer();
+            int p = 0;
+            for (int c = 0; c < 3; c++)
+                for (int y = 0; y < 112; y++)
+                    for (int x = 0; x < 112; x++)
+                        chw[p++] = (idx.get(y, x, c) - 127.5f) / 127.5f;
+            idx.release();
+            fb.put(chw);
+        }
+        fb.rewind();
+        return OnnxTensor.createTensor(env, fb, new long[]{n, 3, 112, 112});
+    }
+}
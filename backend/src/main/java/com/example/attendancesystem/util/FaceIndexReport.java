@@ -0,0 +1,112 @@
+package com.example.attendancesystem.util;
+
+import com.example.attendancesystem.service.EmbeddingGallery;
+import com.example.attendancesystem.service.FaceMatch;
+import com.example.attendancesystem.service.HnswFaceIndex;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Recall-vs-latency report for HNSW parameters against brute force.
+ *
+ * Usage: FaceIndexReport [gallerySize] [queries] [k]
+ *
+ * The gallery is synthetic but shaped like ArcFace output: identities are random
+ * unit vectors and every query is a noisy re-capture of an enrolled identity, so
+ * recall@1 is the number that decides whether recognition results change.
+ */
+public class FaceIndexReport {
+
+    private static final int DIM = EmbeddingGallery.DEFAULT_DIM;
+    private static final int[] M_VALUES = {8, 16, 32};
+    private static final int[] EF_SEARCH_VALUES = {16, 32, 64, 128, 256};
+    private static final int EF_CONSTRUCTION = 200;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Random rnd = new Random(7);
+        float[][] gallery = new float[n][];
+        for (int i = 0; i < n; i++) gallery[i] = randomUnit(rnd);
+        float[][] probes = new float[queries][];
+        for (int q = 0; q < queries; q++) probes[q] = noisyCopy(gallery[rnd.nextInt(n)], rnd, 0.6f);
+
+        EmbeddingGallery exact = new EmbeddingGallery(DIM);
+        for (int i = 0; i < n; i++) exact.put(label(i), gallery[i]);
+
+        long[] exactNanos = new long[queries];
+        String[][] truth = new String[queries][];
+        for (int q = 0; q < queries; q++) {
+            long t0 = System.nanoTime();
+            List<FaceMatch> top = exact.search(probes[q], k);
+            exactNanos[q] = System.nanoTime() - t0;
+            truth[q] = top.stream().map(FaceMatch::getRollNo).toArray(String[]::new);
+        }
+
+        System.out.printf("Gallery %d x %d-d, %d queries, k=%d%n%n", n, DIM, queries, k);
+        System.out.printf("%-22s %10s %10s %12s %12s %12s%n",
+                "index", "build(ms)", "recall@1", "recall@" + k, "mean(us)", "p99(us)");
+        printRow("brute force", 0, 1.0, 1.0, exactNanos);
+
+        for (int m : M_VALUES) {
+            HnswFaceIndex index = new HnswFaceIndex(DIM, m, EF_CONSTRUCTION, EF_SEARCH_VALUES[0]);
+            long b0 = System.nanoTime();
+            for (int i = 0; i < n; i++) index.put(label(i), gallery[i]);
+            long buildMs = (System.nanoTime() - b0) / 1_000_000;
+
+            for (int ef : EF_SEARCH_VALUES) {
+                index.setEfSearch(ef);
+                long[] nanos = new long[queries];
+                int hits1 = 0, hitsK = 0;
+                for (int q = 0; q < queries; q++) {
+                    long t0 = System.nanoTime();
+                    List<FaceMatch> top = index.search(probes[q], k);
+                    nanos[q] = System.nanoTime() - t0;
+
+                    if (!top.isEmpty() && top.get(0).getRollNo().equals(truth[q][0])) hits1++;
+                    Set<String> expected = new HashSet<>(Arrays.asList(truth[q]));
+                    for (FaceMatch fm : top) if (expected.contains(fm.getRollNo())) hitsK++;
+                }
+                printRow("hnsw M=" + m + " ef=" + ef, buildMs,
+                        hits1 / (double) queries, hitsK / (double) (queries * k), nanos);
+            }
+        }
+    }
+
+    private static void printRow(String name, long buildMs, double recall1, double recallK, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1_000.0;
+        double p99 = sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1_000.0;
+        System.out.printf("%-22s %10d %10.4f %12.4f %12.1f %12.1f%n", name, buildMs, recall1, recallK, mean, p99);
+    }
+
+    private static String label(int i) {
+        return "R" + i;
+    }
+
+    private static float[] randomUnit(Random rnd) {
+        float[] v = new float[DIM];
+        double norm = 0;
+        for (int i = 0; i < DIM; i++) {
+            v[i] = (float) rnd.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < DIM; i++) v[i] *= inv;
+        return v;
+    }
+
+    private static float[] noisyCopy(float[] base, Random rnd, float noise) {
+        float[] n = randomUnit(rnd);
+        float[] v = new float[DIM];
+        for (int i = 0; i < DIM; i++) v[i] = base[i] + noise * n[i];
+        return v;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.attendancesystem.util;
+
+import ai.onnxruntime.OrtSession;
+import com.example.attendancesystem.config.ModelConfig;
+import com.example.attendancesystem.service.ArcFaceEmbedder;
+import com.example.attendancesystem.service.EmbeddingGallery;
+import com.example.attendancesystem.service.EmbeddingStore;
+import com.example.attendancesystem.service.FaceRecognitionService;
+import com.example.attendancesystem.service.ImageDecoder;
+import com.example.attendancesystem.service.ModelRegistry;
+import com.example.attendancesystem.service.NativeMemory;
+import com.example.attendancesystem.service.RetinaFaceDecoder;
+import com.example.attendancesystem.service.RetinaFaceDetectorPool;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline gallery builder: turns a directory of rollNo_name_*.jpg photos into the
+ * binary gallery file the server restores at startup (face.store.path).
+ *
+ * Usage: GalleryBuilder &lt;trainingDir&gt; &lt;gallery.bin&gt; [--threads N] [--fresh]
+ *        [--model-version w600k_r50] [--arcface models/w600k_r50.onnx]
+ *        [--retinaface models/retinaface-resnet50.onnx]
+ *
+ * It runs the server's own pipeline: the same RetinaFace pool and decoder
+ * settings, the highest-scoring face per photo, ArcFace through ArcFaceEmbedder,
+ * and the L2-normalized mean of a student's samples. Students are processed in
+ * parallel, one task per student, so each student's samples go through ArcFace
+ * as one batch. The file is written once at the end with EmbeddingStore.putAll.
+ * Existing records in the output are kept and replaced per roll number unless
+ * --fresh is given. The model version must match the server's face.model.version,
+ * or the server treats the records as stale.
+ */
+public class GalleryBuilder {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: GalleryBuilder <trainingDir> <gallery.bin> [--threads N] [--fresh] "
+                    + "[--model-version V] [--arcface resource] [--retinaface resource]");
+            System.exit(2);
+        }
+        Path dir = Path.of(args[0]);
+        Path out = Path.of(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean fresh = false;
+        String modelVersion = "w600k_r50";
+        String arcfaceResource = "models/w600k_r50.onnx";
+        String retinaResource = "models/retinaface-resnet50.onnx";
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--fresh" -> fresh = true;
+                case "--model-version" -> modelVersion = args[++i];
+                case "--arcface" -> arcfaceResource = args[++i];
+                case "--retinaface" -> retinaResource = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        // ✅ Group photos by student (rollNo_name_*.jpg)
+        Map<String, List<File>> photos = new TreeMap<>();
+        Map<String, String> names = new ConcurrentHashMap<>();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        File[] files = dir.toFile().listFiles((d, name) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+        });
+        if (files == null || files.length == 0) {
+            System.out.println("⚠️ No training images found in " + dir);
+            System.exit(1);
+        }
+        for (File f : files) {
+            String[] parts = f.getName().split("\\.")[0].split("_", 3);
+            if (parts.length < 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                failures.add(f.getName() + ": bad filename format (expected rollNo_name_*.jpg)");
+                continue;
+            }
+            photos.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(f);
+            names.putIfAbsent(parts[0], parts[1]);
+        }
+
+        long t0 = System.nanoTime();
+        if (fresh) Files.deleteIfExists(out);
+        try (ModelRegistry registry = new ModelRegistry(Path.of("data/model-cache"))) {
+            registry.register(new ModelRegistry.ModelSpec(ModelConfig.ARCFACE, arcfaceResource)
+                    .intraOpThreads(1)
+                    .interOpThreads(1)
+                    .optLevel(OrtSession.SessionOptions.OptLevel.EXTENDED_OPT)
+                    .sessions(Math.max(1, threads / 2)));
+            Path retinaFile = registry.extract(retinaResource);
+
+            ImageDecoder imageDecoder = new ImageDecoder(1600);
+            RetinaFaceDecoder retinaDecoder = new RetinaFaceDecoder(FaceRecognitionService.RETINA_INPUT_SIZE,
+                    FaceRecognitionService.RETINA_INPUT_SIZE, FaceRecognitionService.DETECTION_THRESHOLD,
+                    FaceRecognitionService.NMS_IOU_THRESHOLD);
+
+            Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+            AtomicInteger done = new AtomicInteger();
+            int students = photos.size();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try (RetinaFaceDetectorPool detectors = new RetinaFaceDetectorPool(retinaFile.toString(), threads,
+                    FaceRecognitionService.RETINA_INPUT_SIZE, 60_000);
+                 ArcFaceEmbedder embedder = new ArcFaceEmbedder(registry, ModelConfig.ARCFACE, 32, threads)) {
+
+                for (Map.Entry<String, List<File>> student : photos.entrySet()) {
+                    pool.submit(() -> {
+                        try (PointerScope scope = NativeMemory.scope()) {
+                            float[] emb = embedStudent(student.getValue(), imageDecoder, detectors, retinaDecoder,
+                                    embedder, failures);
+                            if (emb != null) embeddings.put(student.getKey(), emb);
+                            else failures.add(student.getKey() + ": no usable face in any sample");
+                        } catch (Exception e) {
+                            failures.add(student.getKey() + ": " + e.getMessage());
+                        }
+                        int n = done.incrementAndGet();
+                        if (n % Math.max(1, students / 20) == 0 || n == students)
+                            System.out.printf("   %d/%d students (%.0f%%)%n", n, students, n * 100.0 / students);
+                    });
+                }
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            // ✅ One write for the whole gallery
+            try (EmbeddingStore store = new EmbeddingStore(out, EmbeddingGallery.DEFAULT_DIM, modelVersion)) {
+                int kept = store.load((rollNo, name, emb) -> { });
+                store.putAll(embeddings, names);
+                System.out.printf("✅ Gallery %s: %d students written (%d already present), %d files, %d failures, "
+                                + "%d bytes in %d ms%n",
+                        out, embeddings.size(), kept, files.length, failures.size(), Files.size(out),
+                        (System.nanoTime() - t0) / 1_000_000);
+            }
+        }
+        for (String f : failures) System.out.println("⚠️ " + f);
+    }
+
+    /** Mean of the student's sample embeddings, L2-normalized; null when no sample has a face. */
+    private static float[] embedStudent(List<File> samples, ImageDecoder imageDecoder, RetinaFaceDetectorPool detectors,
+                                        RetinaFaceDecoder retinaDecoder, ArcFaceEmbedder embedder,
+                                        List<String> failures) throws Exception {
+        List<Mat> faces = new ArrayList<>(samples.size());
+        try {
+            for (File f : samples) {
+                Mat img = imageDecoder.decode(ByteBuffer.wrap(Files.readAllBytes(f.toPath())));
+                if (img == null) {
+                    failures.add(f.getName() + ": not a decodable image");
+                    continue;
+                }
+                Mat face = largestScoreFace(img, detectors, retinaDecoder);
+                img.close();
+                if (face == null) failures.add(f.getName() + ": no face detected");
+                else faces.add(face);
+            }
+            if (faces.isEmpty()) return null;
+
+            float[][] embs = embedder.embed(faces);
+            float[] avg = new float[embs[0].length];
+            for (float[] v : embs) for (int i = 0; i < avg.length; i++) avg[i] += v[i];
+            double norm = 0;
+            for (int i = 0; i < avg.length; i++) {
+                avg[i] /= embs.length;
+                norm += avg[i] * avg[i];
+            }
+            norm = Math.sqrt(norm);
+            for (int i = 0; i < avg.length; i++) avg[i] /= (float) (norm + 1e-6);
+            return avg;
+        } finally {
+            for (Mat f : faces) f.close();
+        }
+    }
+
+    /** Crop of the highest-scoring face, exactly as FaceRecognitionService.detectSingleFace picks it. */
+    private static Mat largestScoreFace(Mat img, RetinaFaceDetectorPool detectors, RetinaFaceDecoder retinaDecoder)
+            throws InterruptedException {
+        RetinaFaceDetectorPool.Detector detector = detectors.borrow();
+        try {
+            RetinaFaceDecoder.Detections d = retinaDecoder.decode(detector.forward(img), img.cols(), img.rows());
+            for (int i = 0; i < d.count(); i++) {
+                Rect box = d.rect(i, img.cols(), img.rows());
+                if (box != null) return NativeMemory.crop(img, box);
+            }
+            return null;
+        } finally {
+            detectors.release(detector);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.attendancesystem.util;
+
+import ai.onnxruntime.OrtSession;
+import com.example.attendancesystem.config.ModelConfig;
+import com.example.attendancesystem.service.ArcFaceEmbedder;
+import com.example.attendancesystem.service.FaceRecognitionService;
+import com.example.attendancesystem.service.FrameGate;
+import com.example.attendancesystem.service.ImageDecoder;
+import com.example.attendancesystem.service.ModelRegistry;
+import com.example.attendancesystem.service.NativeMemory;
+import com.example.attendancesystem.service.RetinaFaceDecoder;
+import com.example.attendancesystem.service.RetinaFaceDetectorPool;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Native memory soak check: runs the recognition pipeline (decode, frame gate,
+ * RetinaFace, crops, ArcFace) thousands of times over one photo and fails when
+ * native memory keeps growing once warm.
+ *
+ * Usage: NativeSoakRunner &lt;photo&gt; [--iterations 5000] [--warmup 200] [--threads N]
+ *        [--max-rss-growth-mb 64] [--arcface models/w600k_r50.onnx]
+ *        [--retinaface models/retinaface-resnet50.onnx]
+ *
+ * Each iteration runs inside NativeMemory.scope(), like a request does. The GC
+ * is never called: with scoped releases, JavaCPP's tracked bytes return to the
+ * warm baseline and RSS stays flat on its own. Exits with 1 when either grew by
+ * more than allowed, so it can gate a release build.
+ */
+public class NativeSoakRunner {
+
+    private static final long MAX_JAVACPP_GROWTH_BYTES = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: NativeSoakRunner <photo> [--iterations N] [--warmup N] [--threads N] "
+                    + "[--max-rss-growth-mb M] [--arcface resource] [--retinaface resource]");
+            System.exit(2);
+        }
+        byte[] photo = Files.readAllBytes(Path.of(args[0]));
+        int iterations = 5000;
+        int warmup = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxRssGrowth = 64L << 20;
+        String arcfaceResource = "models/w600k_r50.onnx";
+        String retinaResource = "models/retinaface-resnet50.onnx";
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--max-rss-growth-mb" -> maxRssGrowth = Long.parseLong(args[++i]) << 20;
+                case "--arcface" -> arcfaceResource = args[++i];
+                case "--retinaface" -> retinaResource = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        try (ModelRegistry registry = new ModelRegistry(Path.of("data/model-cache"))) {
+            registry.register(new ModelRegistry.ModelSpec(ModelConfig.ARCFACE, arcfaceResource)
+                    .intraOpThreads(1)
+                    .optLevel(OrtSession.SessionOptions.OptLevel.EXTENDED_OPT)
+                    .sessions(Math.max(1, threads / 2)));
+            Path retinaFile = registry.extract(retinaResource);
+
+            ImageDecoder imageDecoder = new ImageDecoder(1600);
+            RetinaFaceDecoder retinaDecoder = new RetinaFaceDecoder(FaceRecognitionService.RETINA_INPUT_SIZE,
+                    FaceRecognitionService.RETINA_INPUT_SIZE, FaceRecognitionService.DETECTION_THRESHOLD,
+                    FaceRecognitionService.NMS_IOU_THRESHOLD);
+            // Thresholds wide open: every frame goes through detection and embedding
+            FrameGate gate = new FrameGate(0, 0, 255, 0, 0, 0f);
+
+            try (RetinaFaceDetectorPool detectors = new RetinaFaceDetectorPool(retinaFile.toString(), threads,
+                    FaceRecognitionService.RETINA_INPUT_SIZE, 60_000);
+                 ArcFaceEmbedder embedder = new ArcFaceEmbedder(registry, ModelConfig.ARCFACE, 16, threads)) {
+
+                Pipeline pipeline = new Pipeline(photo, imageDecoder, gate, detectors, retinaDecoder, embedder);
+                run(pipeline, warmup, threads);
+
+                long rss0 = NativeMemory.physicalBytes();
+                long javacpp0 = Pointer.totalBytes();
+                System.out.printf("✅ Warm after %d iterations: RSS %d MB, JavaCPP %d KB in %d pointers%n",
+                        warmup, rss0 >> 20, javacpp0 >> 10, Pointer.totalCount());
+
+                long t0 = System.nanoTime();
+                int step = Math.max(1, iterations / 10);
+                for (int done = 0; done < iterations; done += step) {
+                    run(pipeline, Math.min(step, iterations - done), threads);
+                    System.out.printf("   %d/%d  RSS %d MB  JavaCPP %d KB  faces %d%n",
+                            Math.min(done + step, iterations), iterations, NativeMemory.physicalBytes() >> 20,
+                            Pointer.totalBytes() >> 10, pipeline.faces.get());
+                }
+                long millis = (System.nanoTime() - t0) / 1_000_000;
+
+                long rssGrowth = NativeMemory.physicalBytes() - rss0;
+                long javacppGrowth = Pointer.totalBytes() - javacpp0;
+                System.out.printf("%d iterations in %d ms (%.1f/s): RSS %+d KB, JavaCPP %+d KB%n",
+                        iterations, millis, iterations * 1000.0 / Math.max(1, millis), rssGrowth >> 10,
+                        javacppGrowth >> 10);
+                System.out.println(NativeMemory.stats());
+
+                if (javacppGrowth > MAX_JAVACPP_GROWTH_BYTES || rssGrowth > maxRssGrowth) {
+                    System.out.printf("⚠️ Native memory not bounded (limits: JavaCPP %d KB, RSS %d MB)%n",
+                            MAX_JAVACPP_GROWTH_BYTES >> 10, maxRssGrowth >> 20);
+                    System.exit(1);
+                }
+                System.out.println("✅ Native memory bounded");
+            }
+        }
+    }
+
+    private static void run(Pipeline pipeline, int iterations, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(iterations);
+            for (int i = 0; i < iterations; i++) futures.add(pool.submit(() -> {
+                pipeline.recognize();
+                return null;
+            }));
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /* ---------------- Helper ---------------- */
+    /** One recognizeGroup-style pass per call, scoped the way the server scopes a request. */
+    private static final class Pipeline {
+        final byte[] photo;
+        final ImageDecoder imageDecoder;
+        final FrameGate gate;
+        final RetinaFaceDetectorPool detectors;
+        final RetinaFaceDecoder retinaDecoder;
+        final ArcFaceEmbedder embedder;
+        final AtomicLong faces = new AtomicLong();
+
+        Pipeline(byte[] photo, ImageDecoder imageDecoder, FrameGate gate, RetinaFaceDetectorPool detectors,
+                 RetinaFaceDecoder retinaDecoder, ArcFaceEmbedder embedder) {
+            this.photo = photo;
+            this.imageDecoder = imageDecoder;
+            this.gate = gate;
+            this.detectors = detectors;
+            this.retinaDecoder = retinaDecoder;
+            this.embedder = embedder;
+        }
+
+        void recognize() throws Exception {
+            try (PointerScope scope = NativeMemory.scope()) {
+                Mat img = imageDecoder.decode(ByteBuffer.wrap(photo));
+                if (img == null) throw new IllegalArgumentException("Not a decodable image");
+                gate.checkFrame(null, img);
+
+                List<Mat> crops = new ArrayList<>();
+                RetinaFaceDetectorPool.Detector detector = detectors.borrow();
+                try {
+                    RetinaFaceDecoder.Detections d = retinaDecoder.decode(detector.forward(img), img.cols(), img.rows());
+                    for (int i = 0; i < d.count(); i++) {
+                        Rect box = d.rect(i, img.cols(), img.rows());
+                        if (box != null) crops.add(NativeMemory.crop(img, box));
+                    }
+                } finally {
+                    detectors.release(detector);
+                }
+                if (!crops.isEmpty()) embedder.embed(crops);
+                faces.addAndGet(crops.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.attendancesystem.bench;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.example.attendancesystem.config.ModelConfig;
+import com.example.attendancesystem.service.ArcFaceEmbedder;
+import com.example.attendancesystem.service.ModelRegistry;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArcFace preprocessing plus inference through ArcFaceEmbedder, with one
+ * workspace per benchmark thread. Session settings default to the server's
+ * (face.models.arcface.*) and can be changed with -Dbench.arcface.sessions,
+ * -Dbench.arcface.intra-op-threads and -Dbench.arcface.cpu-arena; the model
+ * comes from the classpath (-Dbench.arcface to pick another).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ArcFaceInferenceBenchmark {
+
+    @Param({"1", "8", "16"})
+    public int batch;
+
+    private ModelRegistry registry;
+    private ArcFaceEmbedder embedder;
+    private List<Mat> faces;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkParams params) throws Exception {
+        registry = new ModelRegistry(Path.of("target/model-cache"));
+        registry.register(new ModelRegistry.ModelSpec(ModelConfig.ARCFACE,
+                System.getProperty("bench.arcface", "models/w600k_r50.onnx"))
+                .intraOpThreads(Integer.getInteger("bench.arcface.intra-op-threads", 0))
+                .optLevel(OrtSession.SessionOptions.OptLevel.EXTENDED_OPT)
+                .cpuArena(Boolean.parseBoolean(System.getProperty("bench.arcface.cpu-arena", "true")))
+                .sessions(Integer.getInteger("bench.arcface.sessions", 1)));
+        embedder = new ArcFaceEmbedder(registry, ModelConfig.ARCFACE, batch, params.getThreads());
+        faces = FaceCrops.synthetic(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FaceCrops.close(faces);
+        embedder.close();
+        registry.close();
+    }
+
+    @Benchmark
+    public float[][] embed() throws OrtException {
+        return embedder.embed(faces);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.attendancesystem.bench;
+
+import ai.onnxruntime.OrtEnvironment;
+import com.example.attendancesystem.service.ArcFaceWorkspace;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArcFace preprocessing only: resize to 112x112, BGR to RGB CHW and normalize
+ * into a workspace's input buffer, for a batch of face crops. Needs no model, so
+ * it runs anywhere; see ArcFaceInferenceBenchmark for the full embedding run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ArcFacePreprocessBenchmark {
+
+    @Param({"1", "8", "16"})
+    public int batch;
+
+    private ArcFaceWorkspace workspace;
+    private List<Mat> faces;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        workspace = new ArcFaceWorkspace(OrtEnvironment.getEnvironment(), "input", "output", batch);
+        faces = FaceCrops.synthetic(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FaceCrops.close(faces);
+        workspace.close();
+    }
+
+    @Benchmark
+    public ArcFaceWorkspace preprocess() {
+        for (int i = 0; i < batch; i++) workspace.put(i, faces.get(i));
+        return workspace;
+    }
+}
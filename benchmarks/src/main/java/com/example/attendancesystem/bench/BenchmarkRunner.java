@@ -0,0 +1,86 @@
+package com.example.attendancesystem.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the pipeline benchmarks once per thread count and writes each run as JMH
+ * JSON, so results can be diffed across commits (e.g. with jmh.morethan.io or a
+ * script over the "primaryMetric" fields).
+ *
+ * Usage: java -jar target/benchmarks.jar [regex ...] [--threads 1,4,8] [--out target/jmh]
+ *        [--label name] [--forks N] [--quick] [-p param=v1,v2 ...]
+ *
+ * Files are named &lt;label&gt;-t&lt;threads&gt;.json; the label defaults to the
+ * start time. -Dbench.* system properties (bench.images, bench.arcface, ...) are
+ * passed on to the forked JVMs. --quick cuts warmup and measurement to a smoke run.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> includes = new ArrayList<>();
+        List<String[]> params = new ArrayList<>();
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threads = cores > 1 ? new int[]{1, cores} : new int[]{1};
+        Path out = Path.of("target/jmh");
+        String label = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        int forks = -1;
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = parseThreads(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                case "--label" -> label = args[++i];
+                case "--forks" -> forks = Integer.parseInt(args[++i]);
+                case "--quick" -> quick = true;
+                case "-p" -> params.add(args[++i].split("=", 2));
+                default -> {
+                    if (args[i].startsWith("--")) throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    includes.add(args[i]);
+                }
+            }
+        }
+        if (includes.isEmpty()) includes.add(BenchmarkRunner.class.getPackageName() + "\\..*Benchmark");
+        Files.createDirectories(out);
+
+        List<String> jvmArgs = new ArrayList<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(k -> k.startsWith("bench."))
+                .forEach(k -> jvmArgs.add("-D" + k + "=" + System.getProperty(k)));
+
+        for (int t : threads) {
+            Path result = out.resolve(label + "-t" + t + ".json");
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .threads(t)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.toString())
+                    .jvmArgsAppend(jvmArgs.toArray(new String[0]));
+            for (String include : includes) options.include(include);
+            for (String[] p : params) options.param(p[0], p[1].split(","));
+            if (forks >= 0) options.forks(forks);
+            if (quick) {
+                options.warmupIterations(1).warmupTime(TimeValue.seconds(1))
+                        .measurementIterations(2).measurementTime(TimeValue.seconds(1));
+            }
+            System.out.println("✅ Benchmarks with " + t + " thread(s) -> " + result);
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static int[] parseThreads(String list) {
+        String[] parts = list.split(",");
+        int[] threads = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) threads[i] = Math.max(1, Integer.parseInt(parts[i].trim()));
+        return threads;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.attendancesystem.bench;
+
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Random BGR crops around the sizes RetinaFace hands to ArcFace (ArcFace cost does not depend on content). */
+final class FaceCrops {
+
+    private FaceCrops() {
+    }
+
+    static List<Mat> synthetic(int n) {
+        List<Mat> faces = new ArrayList<>(n);
+        opencv_core.setRNGSeed((int) SyntheticGallery.SEED);
+        try (Scalar lowValue = new Scalar(0.0);
+             Scalar highValue = new Scalar(255.0);
+             Mat low = new Mat(lowValue);
+             Mat high = new Mat(highValue)) {
+            for (int i = 0; i < n; i++) {
+                Mat face = new Mat(120 + 8 * (i % 8), 100 + 8 * (i % 8), opencv_core.CV_8UC3);
+                opencv_core.randu(face, low, high);
+                faces.add(face);
+            }
+        }
+        return faces;
+    }
+
+    static void close(List<Mat> faces) {
+        for (Mat f : faces) f.close();
+        faces.clear();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.attendancesystem.bench;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/** Per-thread round-robin over a benchmark's inputs, so threads do not all hit the same one. */
+@State(Scope.Thread)
+public class FrameCursor {
+
+    private int next;
+
+    public <T> T next(List<T> items) {
+        T item = items.get(next);
+        next = next + 1 == items.size() ? 0 : next + 1;
+        return item;
+    }
+}
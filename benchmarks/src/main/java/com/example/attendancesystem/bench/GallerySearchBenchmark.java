@@ -0,0 +1,70 @@
+package com.example.attendancesystem.bench;
+
+import com.example.attendancesystem.service.FaceIndex;
+import com.example.attendancesystem.service.FaceMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gallery search over synthetic embeddings (see SyntheticGallery): one query
+ * (single recognition) and a batch of 8 (a group photo) against 1k, 10k and
+ * 100k students, for the brute-force gallery and the HNSW graph. Queries are
+ * noisy copies of enrolled students, so every search has a true match.
+ * Building the 100k HNSW graph takes a while; it happens once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GallerySearchBenchmark {
+
+    private static final int QUERIES = 1024;
+    private static final float QUERY_NOISE = 0.03f;
+
+    @Param({"1000", "10000", "100000"})
+    public int students;
+
+    @Param({"exact", "hnsw"})
+    public String index;
+
+    private FaceIndex faceIndex;
+    private List<float[]> queries;
+    private List<float[][]> groups;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        float[][] gallery = SyntheticGallery.embeddings(students, SyntheticGallery.SEED);
+        faceIndex = SyntheticGallery.index(index, gallery);
+        float[][] q = SyntheticGallery.queries(gallery, QUERIES, QUERY_NOISE, SyntheticGallery.SEED);
+        queries = Arrays.asList(q);
+        float[][][] g = new float[QUERIES / 8][][];
+        for (int i = 0; i < g.length; i++) g[i] = Arrays.copyOfRange(q, i * 8, i * 8 + 8);
+        groups = Arrays.asList(g);
+    }
+
+    @Benchmark
+    public FaceMatch best(FrameCursor cursor) {
+        return faceIndex.best(cursor.next(queries));
+    }
+
+    @Benchmark
+    public FaceMatch[] bestAll8(FrameCursor cursor) {
+        return faceIndex.bestAll(cursor.next(groups));
+    }
+}
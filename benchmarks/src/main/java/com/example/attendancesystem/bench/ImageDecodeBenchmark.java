@@ -0,0 +1,65 @@
+package com.example.attendancesystem.bench;
+
+import com.example.attendancesystem.service.ImageDecoder;
+import com.example.attendancesystem.service.NativeMemory;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageDecoder on the two ways images arrive: an upload body of known length
+ * (multipart and raw image/jpeg requests) and an in-memory WebSocket frame.
+ * Large sizes exercise libjpeg's reduced decode (face.decode.max-side = 1600).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ImageDecodeBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "4032x3024"})
+    public String size;
+
+    private final ImageDecoder decoder = new ImageDecoder(1600);
+    private List<byte[]> images;
+
+    @Setup
+    public void setup() throws IOException {
+        images = SampleImages.load(size);
+    }
+
+    @Benchmark
+    public int decodeUpload(FrameCursor cursor) throws IOException {
+        byte[] image = cursor.next(images);
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = decoder.decode(new ByteArrayInputStream(image), image.length);
+            return img == null ? 0 : img.cols();
+        }
+    }
+
+    @Benchmark
+    public int decodeFrame(FrameCursor cursor) {
+        try (PointerScope scope = NativeMemory.scope()) {
+            Mat img = decoder.decode(ByteBuffer.wrap(cursor.next(images)));
+            return img == null ? 0 : img.cols();
+        }
+    }
+}
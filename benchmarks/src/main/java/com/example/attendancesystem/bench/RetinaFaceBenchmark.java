@@ -0,0 +1,96 @@
+package com.example.attendancesystem.bench;
+
+import com.example.attendancesystem.service.FaceRecognitionService;
+import com.example.attendancesystem.service.ImageDecoder;
+import com.example.attendancesystem.service.ModelRegistry;
+import com.example.attendancesystem.service.RetinaFaceDecoder;
+import com.example.attendancesystem.service.RetinaFaceDetectorPool;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RetinaFace through the server's detector pool: the forward pass alone
+ * (resize, blob, Net.forward) and forward plus RetinaFaceDecoder (score
+ * filter, box decode, NMS). The pool gets one Net per benchmark thread, as
+ * face.detector.pool-size=0 gives one per core. The model comes from the
+ * classpath like on the server (-Dbench.retinaface to pick another).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class RetinaFaceBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String size;
+
+    private ModelRegistry registry;
+    private RetinaFaceDetectorPool detectors;
+    private RetinaFaceDecoder decoder;
+    private final List<Mat> frames = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkParams params) throws Exception {
+        registry = new ModelRegistry(Path.of("target/model-cache"));
+        Path model = registry.extract(System.getProperty("bench.retinaface", "models/retinaface-resnet50.onnx"));
+        detectors = new RetinaFaceDetectorPool(model.toString(), params.getThreads(),
+                FaceRecognitionService.RETINA_INPUT_SIZE, 60_000);
+        decoder = new RetinaFaceDecoder(FaceRecognitionService.RETINA_INPUT_SIZE,
+                FaceRecognitionService.RETINA_INPUT_SIZE, FaceRecognitionService.DETECTION_THRESHOLD,
+                FaceRecognitionService.NMS_IOU_THRESHOLD);
+        ImageDecoder imageDecoder = new ImageDecoder(1600);
+        for (byte[] image : SampleImages.load(size)) frames.add(imageDecoder.decode(ByteBuffer.wrap(image)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Mat m : frames) m.close();
+        frames.clear();
+        detectors.close();
+        registry.close();
+    }
+
+    @Benchmark
+    public long forward(FrameCursor cursor) throws InterruptedException {
+        RetinaFaceDetectorPool.Detector detector = detectors.borrow();
+        try {
+            MatVector outs = detector.forward(cursor.next(frames));
+            return outs.size();
+        } finally {
+            detectors.release(detector);
+        }
+    }
+
+    @Benchmark
+    public int forwardAndDecode(FrameCursor cursor) throws InterruptedException {
+        Mat img = cursor.next(frames);
+        RetinaFaceDetectorPool.Detector detector = detectors.borrow();
+        try {
+            return decoder.decode(detector.forward(img), img.cols(), img.rows()).count();
+        } finally {
+            detectors.release(detector);
+        }
+    }
+}
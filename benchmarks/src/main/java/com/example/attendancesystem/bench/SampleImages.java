@@ -0,0 +1,98 @@
+package com.example.attendancesystem.bench;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * JPEG inputs for the decode and detection benchmarks, so they run offline.
+ *
+ * A size such as "1280x720" gives a few deterministic synthetic frames of that
+ * size: a smooth noise background (so JPEG sizes look like camera output rather
+ * than flat color) with skin-toned ellipses where faces would be. The pixels
+ * do not change the cost of decoding or of the RetinaFace forward pass, which
+ * runs at a fixed input size. "dir" reads every .jpg/.png under -Dbench.images
+ * instead, for numbers on real classroom photos.
+ */
+public final class SampleImages {
+
+    public static final String DIR = "dir";
+    private static final int FRAMES_PER_SIZE = 4;
+
+    private SampleImages() {
+    }
+
+    public static List<byte[]> load(String size) throws IOException {
+        if (DIR.equals(size)) return fromDirectory(System.getProperty("bench.images"));
+        String[] wh = size.toLowerCase(Locale.ROOT).split("x");
+        int w = Integer.parseInt(wh[0]);
+        int h = Integer.parseInt(wh[1]);
+        List<byte[]> images = new ArrayList<>(FRAMES_PER_SIZE);
+        for (int i = 0; i < FRAMES_PER_SIZE; i++) images.add(synthetic(w, h, SyntheticGallery.SEED + i));
+        return images;
+    }
+
+    private static List<byte[]> fromDirectory(String dir) throws IOException {
+        if (dir == null) throw new IllegalStateException("size=dir needs -Dbench.images=<directory of photos>");
+        File[] files = new File(dir).listFiles((d, name) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+        });
+        if (files == null || files.length == 0) throw new IllegalStateException("No images in " + dir);
+        List<byte[]> images = new ArrayList<>(files.length);
+        for (File f : files) images.add(Files.readAllBytes(f.toPath()));
+        return images;
+    }
+
+    /** One encoded synthetic frame; same arguments, same bytes. */
+    public static byte[] synthetic(int w, int h, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Mat img = new Mat(h, w, opencv_core.CV_8UC3);
+             Scalar lowValue = new Scalar(40, 50, 60, 0);
+             Scalar highValue = new Scalar(200, 190, 180, 0);
+             Mat low = new Mat(lowValue);
+             Mat high = new Mat(highValue);
+             Size blur = new Size(0, 0);
+             Scalar skin = new Scalar(150, 170, 215, 0);
+             Scalar dark = new Scalar(40, 40, 40, 0);
+             BytePointer jpeg = new BytePointer()) {
+
+            opencv_core.setRNGSeed((int) seed);
+            opencv_core.randu(img, low, high);
+            opencv_imgproc.GaussianBlur(img, img, blur, Math.max(2, w / 200.0));
+
+            int faces = 1 + random.nextInt(6);
+            for (int i = 0; i < faces; i++) {
+                int side = Math.max(24, Math.min(w, h) / (3 + random.nextInt(6)));
+                int cx = side + random.nextInt(Math.max(1, w - 2 * side));
+                int cy = side + random.nextInt(Math.max(1, h - 2 * side));
+                try (Point center = new Point(cx, cy);
+                     Size axes = new Size(side * 2 / 5, side / 2);
+                     Point leftEye = new Point(cx - side / 6, cy - side / 8);
+                     Point rightEye = new Point(cx + side / 6, cy - side / 8)) {
+                    opencv_imgproc.ellipse(img, center, axes, 0, 0, 360, skin, -1, opencv_imgproc.LINE_AA, 0);
+                    opencv_imgproc.circle(img, leftEye, Math.max(2, side / 20), dark, -1, opencv_imgproc.LINE_AA, 0);
+                    opencv_imgproc.circle(img, rightEye, Math.max(2, side / 20), dark, -1, opencv_imgproc.LINE_AA, 0);
+                }
+            }
+
+            if (!opencv_imgcodecs.imencode(".jpg", img, jpeg)) throw new IllegalStateException("JPEG encode failed");
+            byte[] bytes = new byte[(int) jpeg.limit()];
+            jpeg.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.attendancesystem.bench;
+
+import com.example.attendancesystem.service.EmbeddingGallery;
+import com.example.attendancesystem.service.EmbeddingStore;
+import com.example.attendancesystem.service.FaceIndex;
+import com.example.attendancesystem.service.HnswFaceIndex;
+import com.example.attendancesystem.service.TieredFaceIndex;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic L2-normalized embeddings standing in for enrolled students, and
+ * queries that are noisy copies of them (so every query has a true match, like a
+ * real recognition). The same seed always gives the same gallery.
+ *
+ * As a main it writes a gallery file the server restores at startup, to try the
+ * whole service against a large gallery offline:
+ *
+ * Usage: SyntheticGallery &lt;gallery.bin&gt; &lt;students&gt; [--seed 42] [--model-version w600k_r50]
+ */
+public final class SyntheticGallery {
+
+    public static final int DIM = EmbeddingGallery.DEFAULT_DIM;
+    public static final long SEED = 42L;
+
+    private SyntheticGallery() {
+    }
+
+    /** n unit vectors, roll numbers "S0000000" onwards. */
+    public static float[][] embeddings(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        float[][] out = new float[n][];
+        for (int i = 0; i < n; i++) out[i] = unit(random, null, 0f);
+        return out;
+    }
+
+    /** count queries, each a random gallery row plus Gaussian noise of the given scale, renormalized. */
+    public static float[][] queries(float[][] gallery, int count, float noise, long seed) {
+        SplittableRandom random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        float[][] out = new float[count][];
+        for (int i = 0; i < count; i++) out[i] = unit(random, gallery[random.nextInt(gallery.length)], noise);
+        return out;
+    }
+
+    public static String rollNo(int i) {
+        return String.format("S%07d", i);
+    }
+
+    /**
+     * exact = brute-force EmbeddingGallery, hnsw = HnswFaceIndex, tiered = what the
+     * server runs by default; HNSW settings are the server defaults.
+     */
+    public static FaceIndex index(String type, float[][] gallery) {
+        FaceIndex index = switch (type) {
+            case "exact" -> new EmbeddingGallery(DIM);
+            case "hnsw" -> new HnswFaceIndex(DIM, 16, 200, 64);
+            case "tiered" -> new TieredFaceIndex(DIM, 2000, 16, 200, 64);
+            default -> throw new IllegalArgumentException("Unknown index type: " + type);
+        };
+        for (int i = 0; i < gallery.length; i++) index.put(rollNo(i), gallery[i]);
+        return index;
+    }
+
+    private static float[] unit(SplittableRandom random, float[] base, float noise) {
+        float[] v = new float[DIM];
+        double norm = 0;
+        for (int d = 0; d < DIM; d++) {
+            double g = gaussian(random);
+            v[d] = base == null ? (float) g : base[d] + noise * (float) g;
+            norm += v[d] * v[d];
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int d = 0; d < DIM; d++) v[d] *= inv;
+        return v;
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble(); // (0, 1]
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: SyntheticGallery <gallery.bin> <students> [--seed N] [--model-version V]");
+            System.exit(2);
+        }
+        Path out = Path.of(args[0]);
+        int n = Integer.parseInt(args[1]);
+        long seed = SEED;
+        String modelVersion = "w600k_r50";
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--model-version" -> modelVersion = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        long t0 = System.nanoTime();
+        float[][] gallery = embeddings(n, seed);
+        Map<String, float[]> embeddings = new HashMap<>(n * 2);
+        Map<String, String> names = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            embeddings.put(rollNo(i), gallery[i]);
+            names.put(rollNo(i), "Student " + i);
+        }
+        Files.deleteIfExists(out);
+        try (EmbeddingStore store = new EmbeddingStore(out, DIM, modelVersion)) {
+            store.load((rollNo, name, emb) -> { });
+            store.putAll(embeddings, names);
+        }
+        System.out.printf("✅ Synthetic gallery %s: %d students, %d bytes in %d ms%n",
+                out, n, Files.size(out), (System.nanoTime() - t0) / 1_000_000);
+    }
+}
@@ -9,6 +9,7 @@ const AttendanceDashboard = () => {
   const [search, setSearch] = useState("");
   const [selectedStudent, setSelectedStudent] = useState(null);
   const [attendance, setAttendance] = useState([]);
+  const [summary, setSummary] = useState(null);
   const [month, setMonth] = useState(new Date().getMonth() + 1);
   const [year, setYear] = useState(new Date().getFullYear());
 
@@ -41,6 +42,14 @@ const AttendanceDashboard = () => {
           setAttendance(res.data || []); // ✅ backend returns array directly
         })
         .catch((err) => console.error(err));
+
+      // 🔹 Totals come precomputed from the backend rollups
+      axios
+        .get(
+          `${process.env.REACT_APP_API_URL}/attendance/rollup/student/${selectedStudent.rollNo}/${month}/${year}`
+        )
+        .then((res) => setSummary(res.data))
+        .catch((err) => console.error(err));
     }
   };
 
@@ -54,7 +63,10 @@ const AttendanceDashboard = () => {
     try {
       await axios.delete(`${process.env.REACT_APP_API_URL}/attendance/clear/${rollNo}`);
       alert("✅ Attendance cleared for student " + rollNo);
-      if (selectedStudent?.rollNo === rollNo) setAttendance([]);
+      if (selectedStudent?.rollNo === rollNo) {
+        setAttendance([]);
+        setSummary(null);
+      }
       fetchStudents();
     } catch (err) {
       console.error(err);
@@ -69,6 +81,7 @@ const AttendanceDashboard = () => {
       await axios.delete(`${process.env.REACT_APP_API_URL}/attendance/clearAll`); // ✅ camelCase now
       alert("✅ Cleared attendance for all students");
       setAttendance([]);
+      setSummary(null);
       setSelectedStudent(null);
       fetchStudents();
     } catch (err) {
@@ -77,29 +90,20 @@ const AttendanceDashboard = () => {
     }
   };
 
-  // ✅ Attendance calculations
+  // ✅ Attendance totals from the backend rollup (present/absent/percentage)
   const today = new Date();
-  const presentDays = new Set(attendance.map((a) => new Date(a.date).getDate())).size;
+  const presentDays = summary?.presentDays ?? 0;
+  const absentDays = summary?.absentDays ?? 0;
+  const percentage = (summary?.percentage ?? 0).toFixed(1);
 
   const daysInMonth = new Date(year, month, 0).getDate();
-  let totalWorkingDays = 0;
   let holidayCount = 0;
 
   for (let d = 1; d <= daysInMonth; d++) {
     const date = new Date(year, month - 1, d);
-    if (date <= today) {
-      if (date.getDay() === 0 || date.getDay() === 6) {
-        holidayCount++;
-      } else {
-        totalWorkingDays++;
-      }
-    }
+    if (date <= today && (date.getDay() === 0 || date.getDay() === 6)) holidayCount++;
   }
 
-  const absentDays = totalWorkingDays - presentDays;
-  const percentage =
-    totalWorkingDays > 0 ? ((presentDays / totalWorkingDays) * 100).toFixed(1) : 0;
-
   const tileClassName = ({ date, view }) => {
     if (view === "month") {
       const isFuture = date > today;
@@ -4,18 +4,38 @@ import "./AttendanceList.css";
 
 const AttendanceList = () => {
   const [records, setRecords] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loading, setLoading] = useState(false);
 
-  useEffect(() => {
+  // 🔹 Backend pages newest-first: { items, nextCursor } (nextCursor null = last page)
+  const fetchPage = (cursor) => {
+    setLoading(true);
     axios
-      .get(`${process.env.REACT_APP_API_URL}/attendance/list`) // ✅ matches backend
-      .then((res) => setRecords(res.data || [])) // ✅ backend returns array directly
-      .catch((err) => console.error("❌ Error fetching attendance:", err));
+      .get(`${process.env.REACT_APP_API_URL}/attendance/list`, {
+        params: cursor ? { cursor } : {},
+      })
+      .then((res) => {
+        const items = res.data?.items || [];
+        setRecords((prev) => (cursor ? [...prev, ...items] : items));
+        setNextCursor(res.data?.nextCursor || null);
+      })
+      .catch((err) => console.error("❌ Error fetching attendance:", err))
+      .finally(() => setLoading(false));
+  };
+
+  useEffect(() => {
+    fetchPage(null);
   }, []);
 
   return (
     <div className="attendance-container">
       <h2 className="attendance-title gradient-text">📋 Attendance Records</h2>
 
+      <div className="export-links">
+        <a href={`${process.env.REACT_APP_API_URL}/attendance/export?format=csv`}>⬇️ CSV</a>
+        <a href={`${process.env.REACT_APP_API_URL}/attendance/export?format=xlsx`}>⬇️ Excel</a>
+      </div>
+
       <table className="attendance-table">
         <thead>
           <tr>
@@ -48,6 +68,16 @@ const AttendanceList = () => {
           )}
         </tbody>
       </table>
+
+      {nextCursor && (
+        <button
+          className="load-more-btn"
+          onClick={() => fetchPage(nextCursor)}
+          disabled={loading}
+        >
+          {loading ? "Loading..." : "Load more"}
+        </button>
+      )}
     </div>
   );
 };
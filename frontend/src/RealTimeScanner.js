@@ -1,12 +1,12 @@
 import React, { useRef, useState, useEffect, useCallback } from "react";
 import Webcam from "react-webcam";
-import axios from "axios";
 import { motion, AnimatePresence } from "framer-motion";
 import { ChevronDown } from "lucide-react";
 
 export default function RealTimeScanner() {
   const webcamRef = useRef(null);
   const runningRef = useRef(false);
+  const socketRef = useRef(null);
 
   const [message, setMessage] = useState("Waiting for scan...");
   const [status, setStatus] = useState("idle");
@@ -15,6 +15,7 @@ export default function RealTimeScanner() {
   const [facingMode, setFacingMode] = useState("user");
   const [scannedFaces, setScannedFaces] = useState([]);
   const [toasts, setToasts] = useState([]);
+  const [reconnect, setReconnect] = useState(0);
 
   // dropdowns
   const [lectureOpen, setLectureOpen] = useState(false);
@@ -45,93 +46,138 @@ export default function RealTimeScanner() {
     }, 3000);
   };
 
-  /** Capture + Send */
-  const captureAndSend = useCallback(async () => {
-    if (runningRef.current) return;
-    runningRef.current = true;
+  /** Stream endpoint: same API base over ws(s):// */
+  const streamUrl = (lecture) =>
+    `${process.env.REACT_APP_API_URL.replace(/^http/, "ws")}/face/stream` +
+    `?lecture=${encodeURIComponent(lecture)}&slot=1`;
 
-    try {
-      if (!webcamRef.current || selectedLecture === "None") {
-        setMessage("⚠️ Select a lecture to start scanning");
+  /** One JSON reply per frame; attendance arrives once per confirmed face */
+  const handleFrame = useCallback(
+    (event) => {
+      runningRef.current = false;
+      const data = JSON.parse(event.data);
+
+      // Server shed this frame under load: hold off sending for retryAfterMs
+      if (data.busy) {
+        setMessage("⏳ Server busy, retrying...");
         setStatus("warning");
-        runningRef.current = false;
+        runningRef.current = true;
+        setTimeout(() => {
+          runningRef.current = false;
+        }, data.retryAfterMs || 1000);
         return;
       }
 
-      const imageSrc = webcamRef.current.getScreenshot();
-      if (!imageSrc) {
-        runningRef.current = false;
+      if (data.error) {
+        setMessage("⚠️ Backend error");
+        setStatus("fail");
         return;
       }
 
-      const blob = dataURLtoBlob(imageSrc);
-      const formData = new FormData();
-      formData.append("file", blob, "frame.jpg");
-      formData.append("lecture", selectedLecture);
-      formData.append("slot", 1);
-
-      const { data: face } = await axios.post(
-        `${process.env.REACT_APP_API_URL}/face/recognize`,
-        formData,
-        { headers: { "Content-Type": "multipart/form-data" } }
-      );
-
-      if (face && face.name && face.name !== "Unknown") {
-        const { name, rollNo, accuracy } = face;
-
-        const { data: attendanceResp } = await axios.post(
-          `${process.env.REACT_APP_API_URL}/attendance/mark`,
-          null,
-          { params: { name, rollNo, lecture: selectedLecture, slot: 1 } }
-        );
+      // Rejected before inference: tell the user how to fix the shot
+      const gateMessages = {
+        too_dark: "💡 Too dark, add some light",
+        too_bright: "🔆 Too bright, avoid backlight",
+        blurry: "📷 Hold still, image is blurry",
+      };
+      if (gateMessages[data.gate]) {
+        setMessage(gateMessages[data.gate]);
+        setStatus("warning");
+        return;
+      }
 
-        const attMsg =
-          typeof attendanceResp === "string"
-            ? attendanceResp
-            : attendanceResp.message || "No response";
+      const faces = data.faces || [];
+      faces
+        .filter((f) => f.attendance)
+        .forEach(({ name, rollNo, accuracy, attendance: attMsg }) => {
+          setScannedFaces((prev) => [
+            ...prev,
+            { name, rollNo, accuracy, lecture: selectedLecture, status: attMsg },
+          ]);
 
+          if (attMsg.toLowerCase().includes("already")) {
+            showToast(`⚠️ ${name} already marked`, "warning");
+          } else if (attMsg.toLowerCase().includes("success")) {
+            showToast(`✅ ${name} present`, "success");
+          } else {
+            showToast("❌ Not recorded", "error");
+          }
+        });
+
+      const known = faces.filter((f) => f.status === "success");
+      if (known.length > 0) {
         setMessage(
-          `✅ ${name} (${rollNo}) | ${(accuracy * 100).toFixed(1)}% | ${attMsg}`
+          "✅ " +
+            known
+              .map((f) => `${f.name} (${f.rollNo}) ${(f.accuracy * 100).toFixed(1)}%`)
+              .join(" | ")
         );
-
-        setScannedFaces((prev) => [
-          ...prev,
-          { name, rollNo, accuracy, lecture: selectedLecture, status: attMsg },
-        ]);
-
-        if (attMsg.toLowerCase().includes("already")) {
-          setStatus("warning");
-          showToast("⚠️ Already marked", "warning");
-        } else if (attMsg.toLowerCase().includes("success")) {
-          setStatus("success");
-          showToast("✅ Present", "success");
-        } else {
-          setStatus("fail");
-          showToast("❌ Not recorded", "error");
-        }
-      } else {
+        setStatus("success");
+      } else if (faces.some((f) => f.status === "face_too_small")) {
+        setMessage("🔍 Move closer to the camera");
+        setStatus("warning");
+      } else if (faces.some((f) => f.status === "tracking")) {
+        setMessage("🔍 Verifying...");
+        setStatus("warning");
+      } else if (faces.length > 0) {
         setMessage("❌ No face recognized");
         setStatus("fail");
-        showToast("⚠️ Unknown face", "warning");
+      } else {
+        setMessage("Waiting for scan...");
+        setStatus("idle");
       }
-    } catch (err) {
-      console.error(err);
-      setMessage("⚠️ Backend error");
-      setStatus("fail");
-      showToast("⚠️ Backend Error", "error");
-    } finally {
-      runningRef.current = false;
-    }
-  }, [selectedLecture]);
+    },
+    [selectedLecture]
+  );
+
+  /** Capture + Send: one frame in flight at a time */
+  const captureAndSend = useCallback(() => {
+    const socket = socketRef.current;
+    if (!socket || socket.readyState !== WebSocket.OPEN || runningRef.current) return;
+    if (!webcamRef.current) return;
 
-  /** Auto loop */
+    const imageSrc = webcamRef.current.getScreenshot();
+    if (!imageSrc) return;
+
+    // Binary JPEG frame; the backend tracks faces across frames
+    runningRef.current = true;
+    socket.send(dataURLtoBlob(imageSrc));
+  }, []);
+
+  /** Stream loop: (re)connect per lecture, send frames while scanning */
   useEffect(() => {
-    let interval;
-    if (isScanning && selectedLecture !== "None") {
-      interval = setInterval(() => captureAndSend(), 2000);
+    if (!isScanning || selectedLecture === "None") {
+      if (selectedLecture === "None") {
+        setMessage("⚠️ Select a lecture to start scanning");
+        setStatus("warning");
+      }
+      return;
     }
-    return () => clearInterval(interval);
-  }, [isScanning, captureAndSend, selectedLecture]);
+
+    let closedByUs = false;
+    let retry;
+    const socket = new WebSocket(streamUrl(selectedLecture));
+    socketRef.current = socket;
+    runningRef.current = false;
+
+    socket.onmessage = handleFrame;
+    socket.onclose = () => {
+      runningRef.current = false;
+      if (closedByUs) return;
+      setMessage("⚠️ Backend error");
+      setStatus("fail");
+      retry = setTimeout(() => setReconnect((n) => n + 1), 2000);
+    };
+
+    const interval = setInterval(() => captureAndSend(), 250);
+    return () => {
+      closedByUs = true;
+      clearInterval(interval);
+      clearTimeout(retry);
+      socket.close();
+      socketRef.current = null;
+    };
+  }, [isScanning, captureAndSend, handleFrame, selectedLecture, reconnect]);
 
   const bannerColors = {
     success: "bg-green-500/80 text-white shadow-green-500/40",